@@ -0,0 +1,30 @@
+package com.pocketvision.ledger.config;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.pocketvision.ledger.service.DailySpendRollupService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Backfill bảng daily_spend_rollup từ bảng expenses.
+ * Bật bằng application.rollup.rebuild-on-startup=true (chạy một lần rồi tắt lại).
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "application.rollup.rebuild-on-startup", havingValue = "true")
+public class DailySpendRollupBackfillRunner implements ApplicationRunner {
+
+    private final DailySpendRollupService rollupService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        int cells = rollupService.rebuildAll();
+        System.out.println("📦 Rebuilt daily_spend_rollup: " + cells + " cells in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+}
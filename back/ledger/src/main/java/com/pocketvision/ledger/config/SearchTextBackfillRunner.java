@@ -0,0 +1,32 @@
+package com.pocketvision.ledger.config;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.pocketvision.ledger.service.SearchTextBackfillService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Backfill các cột tìm kiếm không dấu và dấu vân tay cho expenses đã có trước khi thêm cột.
+ * Bật bằng application.search.backfill-on-startup=true; chỉ xử lý các dòng còn thiếu nên chạy lại được.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "application.search.backfill-on-startup", havingValue = "true")
+public class SearchTextBackfillRunner implements ApplicationRunner {
+
+    private final SearchTextBackfillService backfillService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        int expenses = backfillService.backfillExpenses();
+        int fingerprints = backfillService.backfillFingerprints();
+        System.out.println("🔤 Backfilled search columns: " + expenses + " expenses, "
+                + fingerprints + " fingerprints in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -34,7 +35,7 @@ public class BudgetController {
                 if (!isValidMonthYear(monthYear)) {
                     return ResponseEntity.badRequest().body(Map.of("message", "Định dạng tháng không hợp lệ (yyyy-MM)"));
                 }
-                budgets = budgetService.getBudgetsByMonth(userId, monthYear);
+                budgets = budgetService.getBudgetsByMonth(userId, YearMonth.parse(monthYear));
             } else {
                 // Nếu không có monthYear -> Lấy tất cả (như cũ)
                 budgets = budgetService.getAllBudgets(userId);
@@ -63,7 +64,7 @@ public class BudgetController {
                 return ResponseEntity.badRequest().body(Map.of("message", "Định dạng tháng/năm không hợp lệ. Sử dụng format: yyyy-MM"));
             }
 
-            List<Budget> monthlyBudgets = budgetService.getBudgetsByMonth(userId, monthYear);
+            List<Budget> monthlyBudgets = budgetService.getBudgetsByMonth(userId, YearMonth.parse(monthYear));
             return ResponseEntity.ok(monthlyBudgets);
 
         } catch (Exception e) {
@@ -102,8 +103,9 @@ public class BudgetController {
             if (budget.getCategoryId() == null) {
                 return ResponseEntity.badRequest().body(Map.of("message", "Vui lòng chọn danh mục"));
             }
-            if (budget.getMonthYear() == null || budget.getMonthYear().trim().isEmpty()) {
-                return ResponseEntity.badRequest().body(Map.of("message", "Thiếu thông tin tháng/năm"));
+            // monthYear sai định dạng cũng được đọc thành null (xem Budget.setMonthYear)
+            if (budget.getMonthYear() == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Thiếu thông tin tháng/năm hoặc sai định dạng (yyyy-MM)"));
             }
             if (budget.getLimitAmount() == null) {
                 return ResponseEntity.badRequest().body(Map.of("message", "Vui lòng nhập số tiền ngân sách"));
@@ -120,6 +122,8 @@ public class BudgetController {
 
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Lỗi khi tạo ngân sách: " + e.getMessage()));
@@ -145,6 +149,8 @@ public class BudgetController {
 
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Lỗi khi cập nhật ngân sách: " + e.getMessage()));
@@ -0,0 +1,89 @@
+package com.pocketvision.ledger.controller;
+
+import com.pocketvision.ledger.model.BudgetTemplate;
+import com.pocketvision.ledger.service.BudgetTemplateService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/budget-templates")
+@RequiredArgsConstructor
+public class BudgetTemplateController {
+
+    private final BudgetTemplateService budgetTemplateService;
+
+    // 1. Danh sách mẫu ngân sách của user
+    @GetMapping
+    public ResponseEntity<?> getByUser(@RequestParam Long userId) {
+        try {
+            if (userId == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Thiếu thông tin userId"));
+            }
+            return ResponseEntity.ok(budgetTemplateService.getByUser(userId));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi lấy danh sách mẫu ngân sách: " + e.getMessage()));
+        }
+    }
+
+    // 2. Tạo mẫu (áp dụng từ tháng kế tiếp)
+    @PostMapping
+    public ResponseEntity<?> create(@RequestBody BudgetTemplate template) {
+        try {
+            return ResponseEntity.ok(budgetTemplateService.create(template));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi tạo mẫu ngân sách: " + e.getMessage()));
+        }
+    }
+
+    // 3. Cập nhật hạn mức / bật tắt mẫu
+    @PutMapping("/{id}")
+    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody BudgetTemplate template) {
+        try {
+            return ResponseEntity.ok(budgetTemplateService.update(id, template));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi cập nhật mẫu ngân sách: " + e.getMessage()));
+        }
+    }
+
+    // 4. Xóa mẫu (không xóa các ngân sách đã tạo)
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> delete(@PathVariable Long id) {
+        try {
+            budgetTemplateService.delete(id);
+            return ResponseEntity.ok(Map.of("message", "Xóa mẫu ngân sách thành công"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi xóa mẫu ngân sách: " + e.getMessage()));
+        }
+    }
+
+    // 5. Chạy lại job tạo ngân sách cho một tháng (an toàn khi chạy nhiều lần)
+    @PostMapping("/rollover")
+    public ResponseEntity<?> rollover(@RequestParam String monthYear) {
+        try {
+            YearMonth month = YearMonth.parse(monthYear);
+            int created = budgetTemplateService.rollover(month);
+            return ResponseEntity.ok(Map.of("monthYear", month.toString(), "created", created));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Định dạng tháng không hợp lệ (yyyy-MM)"));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi tạo ngân sách từ mẫu: " + e.getMessage()));
+        }
+    }
+}
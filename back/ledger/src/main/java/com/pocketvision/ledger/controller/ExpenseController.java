@@ -1,31 +1,69 @@
 package com.pocketvision.ledger.controller;
 
+import com.pocketvision.ledger.dto.BatchItemResult;
+import com.pocketvision.ledger.dto.CursorPage;
+import com.pocketvision.ledger.dto.DuplicateMode;
+import com.pocketvision.ledger.dto.ExpenseFilter;
 import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.service.DuplicateExpenseException;
 import com.pocketvision.ledger.service.ExpenseService;
+import com.pocketvision.ledger.service.IdempotencyService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/expenses")
 public class ExpenseController {
 
+    private static final Set<String> FILTER_SORT_FIELDS = Set.of("expenseDate", "totalAmount", "createdAt");
+    private static final int DEFAULT_FILTER_PAGE_SIZE = 20;
+    private static final int MAX_FILTER_PAGE_SIZE = 100;
+    private static final int MAX_BATCH_SIZE = 1000;
+
     @Autowired
     private ExpenseService expenseService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    // Có limit/cursor -> trả về một trang (keyset); không có -> trả về toàn bộ danh sách như cũ
+    // view=summary -> chỉ trả về các trường hiển thị trong danh sách (id, ngày, số tiền, cửa hàng, danh mục, phương thức)
     @GetMapping
-    public ResponseEntity<?> getAllByUser(@RequestParam Long userId) {
+    public ResponseEntity<?> getAllByUser(
+            @RequestParam Long userId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String view) {
         try {
             if (userId == null) {
                 return ResponseEntity.badRequest().body(Map.of("message", "Thiếu thông tin userId"));
             }
+            if ("summary".equalsIgnoreCase(view)) {
+                if (limit != null || cursor != null) {
+                    return ResponseEntity.ok(expenseService.getExpenseSummaryPage(userId, cursor, limit));
+                }
+                return ResponseEntity.ok(expenseService.getExpenseSummaries(userId));
+            }
+            if (limit != null || cursor != null) {
+                CursorPage<Expense> page = expenseService.getExpensesPage(userId, cursor, limit);
+                return ResponseEntity.ok(page);
+            }
             List<Expense> expenses = expenseService.getExpensesByUser(userId);
             return ResponseEntity.ok(expenses);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Lỗi server: " + e.getMessage()));
@@ -47,8 +85,18 @@ public class ExpenseController {
         }
     }
 
+    // Client gửi kèm Idempotency-Key để khi thử lại (mạng chập chờn) không tạo trùng chi tiêu
+    // duplicateMode = allow | flag (mặc định, trả về possibleDuplicate) | reject (409 nếu trùng)
     @PostMapping
-    public ResponseEntity<?> createExpense(@RequestBody Expense expense) {
+    public ResponseEntity<?> createExpense(
+            @RequestBody Expense expense,
+            @RequestParam(required = false) String duplicateMode,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("expenses:create:" + expense.getUserId(), idempotencyKey, expense,
+                () -> doCreateExpense(expense, duplicateMode));
+    }
+
+    private ResponseEntity<?> doCreateExpense(Expense expense, String duplicateMode) {
         try {
             if (expense.getUserId() == null) {
                 return ResponseEntity.badRequest().body("Thiếu thông tin người dùng (userId)");
@@ -72,9 +120,12 @@ public class ExpenseController {
                 return ResponseEntity.badRequest().body("Nội dung ghi chú quá dài (tối đa 255 ký tự)");
             }
 
-            Expense saved = expenseService.createExpense(expense);
+            Expense saved = expenseService.createExpense(expense, DuplicateMode.from(duplicateMode));
             return ResponseEntity.ok(saved);
 
+        } catch (DuplicateExpenseException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", e.getMessage(), "duplicateOf", e.getExistingExpenseId()));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
@@ -83,6 +134,33 @@ public class ExpenseController {
         }
     }
 
+    // Tạo nhiều khoản chi trong một request (đồng bộ dữ liệu offline)
+    @PostMapping("/batch")
+    public ResponseEntity<?> createExpensesBatch(@RequestBody List<Expense> expenses) {
+        try {
+            if (expenses == null || expenses.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Danh sách chi tiêu trống"));
+            }
+            if (expenses.size() > MAX_BATCH_SIZE) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Tối đa " + MAX_BATCH_SIZE + " khoản chi mỗi lần"));
+            }
+
+            List<BatchItemResult> results = expenseService.createExpensesBatch(expenses);
+            long created = results.stream().filter(BatchItemResult::isSuccess).count();
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("total", results.size());
+            body.put("created", created);
+            body.put("failed", results.size() - created);
+            body.put("results", results);
+            return ResponseEntity.ok(body);
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi tạo chi tiêu theo lô: " + e.getMessage()));
+        }
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<?> updateExpense(@PathVariable Long id, @RequestBody Expense expense) {
         try {
@@ -129,6 +207,29 @@ public class ExpenseController {
         }
     }
 
+    // Quét các nhóm khoản chi có thể trùng (cùng số tiền, ngày, cửa hàng) của user
+    @GetMapping("/duplicates")
+    public ResponseEntity<?> findDuplicates(@RequestParam Long userId) {
+        try {
+            if (userId == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Thiếu thông tin userId"));
+            }
+
+            List<List<Expense>> groups = expenseService.findDuplicateGroups(userId);
+            List<Map<String, Object>> body = new ArrayList<>(groups.size());
+            for (List<Expense> group : groups) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("count", group.size());
+                item.put("expenses", group);
+                body.add(item);
+            }
+            return ResponseEntity.ok(body);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi tìm chi tiêu trùng: " + e.getMessage()));
+        }
+    }
+
     @GetMapping("/search")
     public ResponseEntity<?> searchExpenses(
             @RequestParam Long userId,
@@ -147,50 +248,72 @@ public class ExpenseController {
         return ResponseEntity.ok(results);
     }
 
+    // Lọc ở phía database. Có page/size -> trả về một trang kèm tổng số; không có -> trả về toàn bộ danh sách (đã sắp xếp)
     @GetMapping("/fill")
     public ResponseEntity<?> filterExpenses(
             @RequestParam Long userId,
-            @RequestParam(required = false) String startDate,
-            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @RequestParam(required = false) Double minAmount,
             @RequestParam(required = false) Double maxAmount,
-            @RequestParam(required = false) String category) {
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String paymentMethod,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false, defaultValue = "expenseDate") String sortBy,
+            @RequestParam(required = false, defaultValue = "desc") String direction) {
 
         try {
-            List<Expense> allExpenses = expenseService.getExpensesByUser(userId);
-
-            List<Expense> filtered = allExpenses.stream()
-                .filter(e -> {
-                    boolean match = true;
-
-                    if (startDate != null && !startDate.isEmpty()) {
-                        match = match && !e.getExpenseDate().isBefore(LocalDate.parse(startDate));
-                    }
-                    if (endDate != null && !endDate.isEmpty()) {
-                        match = match && !e.getExpenseDate().isAfter(LocalDate.parse(endDate));
-                    }
-                    if (minAmount != null) {
-                        match = match && e.getTotalAmount() >= minAmount;
-                    }
-                    if (maxAmount != null) {
-                        match = match && e.getTotalAmount() <= maxAmount;
-                    }
-                    
-                    if (category != null && !category.isEmpty()) {
-                        try {
-                            Long catId = Long.parseLong(category);
-                            match = match && e.getCategoryId().equals(catId);
-                        } catch (NumberFormatException ex) {
-                            // Nếu user nhập tên (chữ), tạm thời bỏ qua filter này
-                            // TODO: Cần nâng cấp Service để join bảng Categories nếu muốn tìm theo tên
-                        }
-                    }
-
-                    return match;
-                })
-                .collect(Collectors.toList());
-
-            return ResponseEntity.ok(filtered);
+            if (minAmount != null && maxAmount != null && minAmount > maxAmount) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Khoảng tiền không hợp lệ"));
+            }
+            if (!FILTER_SORT_FIELDS.contains(sortBy)) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Không hỗ trợ sắp xếp theo: " + sortBy));
+            }
+
+            ExpenseFilter filter = ExpenseFilter.builder()
+                    .userId(userId)
+                    .startDate(startDate)
+                    .endDate(endDate)
+                    .minAmount(minAmount)
+                    .maxAmount(maxAmount)
+                    .build();
+
+            // Danh mục: số -> lọc theo ID, chữ -> lọc theo tên danh mục
+            if (category != null && !category.isBlank()) {
+                try {
+                    filter.setCategoryId(Long.parseLong(category.trim()));
+                } catch (NumberFormatException ex) {
+                    filter.setCategoryName(category.trim());
+                }
+            }
+            if (paymentMethod != null && !paymentMethod.isBlank()) {
+                try {
+                    filter.setPaymentMethod(Expense.PaymentMethod.valueOf(paymentMethod.trim().toUpperCase()));
+                } catch (IllegalArgumentException ex) {
+                    return ResponseEntity.badRequest().body(Map.of("message", "Phương thức thanh toán không hợp lệ: " + paymentMethod));
+                }
+            }
+
+            Sort.Direction sortDirection = "asc".equalsIgnoreCase(direction) ? Sort.Direction.ASC : Sort.Direction.DESC;
+            Sort sort = Sort.by(sortDirection, sortBy).and(Sort.by(sortDirection, "id"));
+
+            if (page == null && size == null) {
+                return ResponseEntity.ok(expenseService.filterExpenses(filter, sort));
+            }
+
+            int pageIndex = (page == null || page < 0) ? 0 : page;
+            int pageSize = (size == null || size <= 0) ? DEFAULT_FILTER_PAGE_SIZE : Math.min(size, MAX_FILTER_PAGE_SIZE);
+            Page<Expense> result = expenseService.filterExpenses(filter, PageRequest.of(pageIndex, pageSize, sort));
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("items", result.getContent());
+            body.put("page", result.getNumber());
+            body.put("size", result.getSize());
+            body.put("totalElements", result.getTotalElements());
+            body.put("totalPages", result.getTotalPages());
+            body.put("hasNext", result.hasNext());
+            return ResponseEntity.ok(body);
 
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
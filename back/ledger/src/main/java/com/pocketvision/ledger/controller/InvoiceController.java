@@ -1,14 +1,18 @@
 package com.pocketvision.ledger.controller;
 
+import com.pocketvision.ledger.dto.DuplicateMode;
 import com.pocketvision.ledger.model.Expense; // Import Expense
 import com.pocketvision.ledger.model.Invoice;
+import com.pocketvision.ledger.service.DuplicateExpenseException;
+import com.pocketvision.ledger.service.IdempotencyService;
 import com.pocketvision.ledger.service.InvoiceService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/invoices")
@@ -17,6 +21,9 @@ public class InvoiceController {
     @Autowired
     private InvoiceService invoiceService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     // 1. API tải ảnh lên và phân tích
     @PostMapping(value = "/upload", consumes = "multipart/form-data")
     public ResponseEntity<?> uploadAndAnalyze(
@@ -33,9 +40,14 @@ public class InvoiceController {
         }
     }
 
-    // 2. API lấy danh sách hóa đơn
+    // 2. API lấy danh sách hóa đơn (view=summary -> bản rút gọn, không kèm items/ghi chú/ảnh)
     @GetMapping
-    public ResponseEntity<List<Invoice>> getInvoices(@RequestParam Long userId) {
+    public ResponseEntity<?> getInvoices(
+            @RequestParam Long userId,
+            @RequestParam(required = false) String view) {
+        if ("summary".equalsIgnoreCase(view)) {
+            return ResponseEntity.ok(invoiceService.getInvoiceSummaries(userId));
+        }
         return ResponseEntity.ok(invoiceService.getAllInvoices(userId));
     }
 
@@ -69,12 +81,26 @@ public class InvoiceController {
     }
 
     // 5. API chuyển đổi Hóa đơn thành Chi tiêu (Cập nhật ngân sách)
+    // Client gửi kèm Idempotency-Key để khi thử lại không tạo trùng chi tiêu
     @PostMapping("/{id}/convert")
-    public ResponseEntity<?> convertToExpense(@PathVariable Long id, @RequestParam Long userId) {
+    public ResponseEntity<?> convertToExpense(
+            @PathVariable Long id,
+            @RequestParam Long userId,
+            @RequestParam(required = false) String duplicateMode,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("invoices:convert:" + userId, idempotencyKey,
+                Map.of("invoiceId", id, "userId", userId, "duplicateMode", String.valueOf(duplicateMode)),
+                () -> doConvertToExpense(id, userId, duplicateMode));
+    }
+
+    private ResponseEntity<?> doConvertToExpense(Long id, Long userId, String duplicateMode) {
         try {
             // Thay 'var' bằng 'Expense' để tường minh và tránh lỗi
-            Expense expense = invoiceService.convertToExpense(id, userId);
+            Expense expense = invoiceService.convertToExpense(id, userId, DuplicateMode.from(duplicateMode));
             return ResponseEntity.ok(expense);
+        } catch (DuplicateExpenseException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", e.getMessage(), "duplicateOf", e.getExistingExpenseId()));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
@@ -0,0 +1,88 @@
+package com.pocketvision.ledger.controller;
+
+import com.pocketvision.ledger.model.RecurringExpense;
+import com.pocketvision.ledger.service.RecurringExpenseService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/recurring-expenses")
+@RequiredArgsConstructor
+public class RecurringExpenseController {
+
+    private final RecurringExpenseService recurringExpenseService;
+
+    // 1. Danh sách chi tiêu định kỳ của user (lần phát sinh gần nhất trước)
+    @GetMapping
+    public ResponseEntity<?> getByUser(@RequestParam Long userId) {
+        try {
+            if (userId == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Thiếu thông tin userId"));
+            }
+            return ResponseEntity.ok(recurringExpenseService.getByUser(userId));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi lấy danh sách chi tiêu định kỳ: " + e.getMessage()));
+        }
+    }
+
+    // 2. Chi tiết một quy tắc
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getById(@PathVariable Long id) {
+        try {
+            RecurringExpense rule = recurringExpenseService.getById(id);
+            if (rule == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("message", "Không tìm thấy chi tiêu định kỳ với ID: " + id));
+            }
+            return ResponseEntity.ok(rule);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi lấy chi tiêu định kỳ: " + e.getMessage()));
+        }
+    }
+
+    // 3. Tạo mới (lần phát sinh đầu tiên = startDate)
+    @PostMapping
+    public ResponseEntity<?> create(@RequestBody RecurringExpense rule) {
+        try {
+            return ResponseEntity.ok(recurringExpenseService.create(rule));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi tạo chi tiêu định kỳ: " + e.getMessage()));
+        }
+    }
+
+    // 4. Cập nhật (các expense đã sinh trước đó giữ nguyên)
+    @PutMapping("/{id}")
+    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody RecurringExpense rule) {
+        try {
+            return ResponseEntity.ok(recurringExpenseService.update(id, rule));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi cập nhật chi tiêu định kỳ: " + e.getMessage()));
+        }
+    }
+
+    // 5. Xóa quy tắc (không xóa các expense đã sinh)
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> delete(@PathVariable Long id) {
+        try {
+            recurringExpenseService.delete(id);
+            return ResponseEntity.ok(Map.of("message", "Xóa chi tiêu định kỳ thành công"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi xóa chi tiêu định kỳ: " + e.getMessage()));
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package com.pocketvision.ledger.controller;
 
+import com.pocketvision.ledger.service.ExpenseExportService;
+import com.pocketvision.ledger.service.ExpenseExportWriter;
+import com.pocketvision.ledger.service.ReportCache;
+import com.pocketvision.ledger.service.ReportJobService;
 import com.pocketvision.ledger.service.ReportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.Map;
@@ -17,6 +26,15 @@ public class ReportController {
     @Autowired
     private ReportService reportService;
 
+    @Autowired
+    private ReportCache reportCache;
+
+    @Autowired
+    private ExpenseExportService expenseExportService;
+
+    @Autowired
+    private ReportJobService reportJobService;
+
     @GetMapping("/summary")
     public ResponseEntity<?> getReportSummary(
             @RequestParam Long userId,
@@ -87,34 +105,100 @@ public class ReportController {
         }
     }
 
-    @GetMapping("/export")
-    public ResponseEntity<?> exportReport(
+    @GetMapping("/cache/stats")
+    public ResponseEntity<?> getCacheStats() {
+        return ResponseEntity.ok(reportCache.getStats());
+    }
+
+    // Báo cáo nâng cao chạy nền: tạo job, hỏi trạng thái, lấy kết quả
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitReportJob(
             @RequestParam Long userId,
-            @RequestParam String format,
+            @RequestParam String reportType,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
-        
+
         try {
             if (userId == null) {
                 return ResponseEntity.badRequest().body(Map.of("message", "Thiếu userId"));
             }
 
-            Map<String, Object> placeholderResponse = Map.of(
-                "message", "Tính năng xuất báo cáo " + format.toUpperCase() + " đang được phát triển",
-                "userId", userId,
-                "format", format,
-                "period", Map.of(
-                    "startDate", startDate != null ? startDate.toString() : "auto",
-                    "endDate", endDate != null ? endDate.toString() : "auto"
-                )
-            );
-
-            return ResponseEntity.ok(placeholderResponse);
-            
-        } catch (Exception e) {
+            if (startDate == null || endDate == null) {
+                endDate = LocalDate.now();
+                startDate = endDate.minusDays(30);
+            }
+
+            Map<String, Object> job = reportJobService.submit(userId, reportType, startDate, endDate);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getReportJob(@PathVariable String jobId, @RequestParam Long userId) {
+        Map<String, Object> status = reportJobService.getStatus(jobId, userId);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Không tìm thấy job báo cáo hoặc job đã hết hạn"));
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    @GetMapping("/jobs/{jobId}/result")
+    public ResponseEntity<?> getReportJobResult(@PathVariable String jobId, @RequestParam Long userId) {
+        ReportJobService.Status status = reportJobService.getJobStatus(jobId, userId);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Không tìm thấy job báo cáo hoặc job đã hết hạn"));
+        }
+
+        return switch (status) {
+            case DONE -> ResponseEntity.ok(reportJobService.getResult(jobId, userId));
+            case FAILED -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(reportJobService.getStatus(jobId, userId));
+            default -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(reportJobService.getStatus(jobId, userId));
+        };
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<?> exportReport(
+            @RequestParam Long userId,
+            @RequestParam String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        
+        if (userId == null) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Thiếu userId"));
+        }
+
+        ExpenseExportWriter.Format exportFormat = ExpenseExportWriter.Format.from(format);
+        if (exportFormat == null) {
             return ResponseEntity.badRequest().body(Map.of(
-                "message", "Lỗi khi xuất báo cáo: " + e.getMessage()
+                "message", "Định dạng xuất không được hỗ trợ: " + format + " (hỗ trợ: csv, xlsx)"
             ));
         }
+
+        final LocalDate finalStartDate = (startDate != null) ? startDate : LocalDate.now().withDayOfMonth(1);
+        final LocalDate finalEndDate = (endDate != null) ? endDate : LocalDate.now();
+        if (finalStartDate.isAfter(finalEndDate)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Ngày bắt đầu phải trước ngày kết thúc"));
+        }
+
+        String fileName = "chi-tieu_" + finalStartDate + "_" + finalEndDate + "." + exportFormat.getExtension();
+
+        // Ghi thẳng ra response trong lúc đọc cursor, không dựng file trong bộ nhớ
+        StreamingResponseBody body = out ->
+                expenseExportService.export(userId, finalStartDate, finalEndDate, exportFormat, out);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .body(body);
     }
-}
\ No newline at end of file
+}
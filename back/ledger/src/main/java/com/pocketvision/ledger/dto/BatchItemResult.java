@@ -0,0 +1,26 @@
+package com.pocketvision.ledger.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Kết quả của từng phần tử trong một request ghi theo lô (index = vị trí trong danh sách gửi lên).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult {
+    private int index;
+    private boolean success;
+    private Long id;
+    private String message;
+
+    public static BatchItemResult created(int index, Long id) {
+        return new BatchItemResult(index, true, id, null);
+    }
+
+    public static BatchItemResult failed(int index, String message) {
+        return new BatchItemResult(index, false, null, message);
+    }
+}
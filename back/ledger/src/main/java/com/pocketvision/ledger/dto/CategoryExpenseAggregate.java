@@ -0,0 +1,6 @@
+package com.pocketvision.ledger.dto;
+
+public interface CategoryExpenseAggregate extends ExpenseAggregate {
+    // null = expense không có danh mục
+    Long getCategoryId();
+}
@@ -0,0 +1,21 @@
+package com.pocketvision.ledger.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một trang kết quả phân trang theo cursor (keyset).
+ * nextCursor là chuỗi opaque, truyền lại nguyên văn để lấy trang kế tiếp; null khi đã hết dữ liệu.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+    private int limit;
+}
@@ -0,0 +1,7 @@
+package com.pocketvision.ledger.dto;
+
+import java.time.LocalDate;
+
+public interface DailyExpenseAggregate extends ExpenseAggregate {
+    LocalDate getSpendDate();
+}
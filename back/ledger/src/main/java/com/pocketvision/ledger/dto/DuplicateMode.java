@@ -0,0 +1,24 @@
+package com.pocketvision.ledger.dto;
+
+import java.util.Locale;
+
+/**
+ * Cách xử lý khi khoản chi mới trùng dấu vân tay với một khoản chi đã có (xem ExpenseFingerprint).
+ */
+public enum DuplicateMode {
+    // Không kiểm tra
+    ALLOW,
+    // Vẫn tạo, trả về possibleDuplicate = true (mặc định)
+    FLAG,
+    // Không tạo, trả về lỗi 409
+    REJECT;
+
+    public static DuplicateMode from(String value) {
+        if (value == null || value.isBlank()) return FLAG;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("duplicateMode không hợp lệ (allow, flag, reject)");
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.pocketvision.ledger.dto;
+
+/**
+ * Projection dùng chung cho các truy vấn GROUP BY trên bảng daily_spend_rollup.
+ * Chỉ các dòng tổng hợp đi qua JDBC, không hydrate entity; số tiền theo đơn vị 1/100 đồng (xem Money).
+ */
+public interface ExpenseAggregate {
+    Long getTotalAmountMinor();
+    Long getExpenseCount();
+    Long getMinAmountMinor();
+    Long getMaxAmountMinor();
+}
@@ -0,0 +1,28 @@
+package com.pocketvision.ledger.dto;
+
+import java.time.LocalDate;
+
+import com.pocketvision.ledger.model.Expense;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Điều kiện lọc chi tiêu; trường null = không lọc theo trường đó.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseFilter {
+    private Long userId;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Double minAmount;
+    private Double maxAmount;
+    private Long categoryId;
+    private String categoryName;
+    private Expense.PaymentMethod paymentMethod;
+}
@@ -0,0 +1,35 @@
+package com.pocketvision.ledger.dto;
+
+import java.time.LocalDate;
+
+import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.util.Money;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Dòng chi tiêu rút gọn cho màn hình danh sách (GET /api/expenses?view=summary).
+ * Được tạo trực tiếp từ câu JPQL (constructor expression) nên không qua persistence context.
+ */
+@Data
+@NoArgsConstructor
+public class ExpenseSummary {
+    private Long id;
+    private LocalDate expenseDate;
+    private Double totalAmount;
+    private String storeName;
+    private Long categoryId;
+    private Expense.PaymentMethod paymentMethod;
+
+    // totalAmount trong JPQL là giá trị đã qua MoneyConverter (1/100 đồng)
+    public ExpenseSummary(Long id, LocalDate expenseDate, Long totalAmountMinor, String storeName,
+                          Long categoryId, Expense.PaymentMethod paymentMethod) {
+        this.id = id;
+        this.expenseDate = expenseDate;
+        this.totalAmount = Money.toMajor(totalAmountMinor);
+        this.storeName = storeName;
+        this.categoryId = categoryId;
+        this.paymentMethod = paymentMethod;
+    }
+}
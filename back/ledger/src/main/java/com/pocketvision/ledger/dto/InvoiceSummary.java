@@ -0,0 +1,34 @@
+package com.pocketvision.ledger.dto;
+
+import java.time.LocalDate;
+
+import com.pocketvision.ledger.model.Invoice;
+import com.pocketvision.ledger.util.Money;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Hóa đơn rút gọn cho màn hình danh sách (GET /api/invoices?view=summary), không kèm items.
+ */
+@Data
+@NoArgsConstructor
+public class InvoiceSummary {
+    private Long id;
+    private LocalDate invoiceDate;
+    private Double totalAmount;
+    private String storeName;
+    private Long categoryId;
+    private Invoice.PaymentMethod paymentMethod;
+
+    // totalAmount trong JPQL là giá trị đã qua MoneyConverter (1/100 đồng)
+    public InvoiceSummary(Long id, LocalDate invoiceDate, Long totalAmountMinor, String storeName,
+                          Long categoryId, Invoice.PaymentMethod paymentMethod) {
+        this.id = id;
+        this.invoiceDate = invoiceDate;
+        this.totalAmount = Money.toMajor(totalAmountMinor);
+        this.storeName = storeName;
+        this.categoryId = categoryId;
+        this.paymentMethod = paymentMethod;
+    }
+}
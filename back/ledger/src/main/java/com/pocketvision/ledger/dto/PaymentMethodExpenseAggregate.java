@@ -0,0 +1,7 @@
+package com.pocketvision.ledger.dto;
+
+import com.pocketvision.ledger.model.Expense;
+
+public interface PaymentMethodExpenseAggregate extends ExpenseAggregate {
+    Expense.PaymentMethod getPaymentMethod();
+}
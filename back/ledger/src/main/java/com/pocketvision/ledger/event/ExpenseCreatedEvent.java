@@ -0,0 +1,17 @@
+package com.pocketvision.ledger.event;
+
+import java.time.LocalDate;
+
+import com.pocketvision.ledger.model.Expense;
+
+/**
+ * Phát ra khi một expense được tạo. Chỉ chứa bản chụp các trường cần cho xử lý phụ (ngân sách, thông báo),
+ * không giữ tham chiếu tới entity. Số tiền theo đơn vị 1/100 đồng (xem Money).
+ */
+public record ExpenseCreatedEvent(Long expenseId, Long userId, Long categoryId, LocalDate expenseDate, long amountMinor) {
+
+    public static ExpenseCreatedEvent of(Expense expense) {
+        return new ExpenseCreatedEvent(expense.getId(), expense.getUserId(), expense.getCategoryId(),
+                expense.getExpenseDate(), expense.getTotalAmountMinor());
+    }
+}
@@ -0,0 +1,9 @@
+package com.pocketvision.ledger.event;
+
+import java.time.LocalDate;
+
+/**
+ * Phát ra khi một expense bị xóa, kèm các giá trị của expense trước khi xóa (số tiền theo 1/100 đồng).
+ */
+public record ExpenseDeletedEvent(Long expenseId, Long userId, Long categoryId, LocalDate expenseDate, long amountMinor) {
+}
@@ -0,0 +1,292 @@
+package com.pocketvision.ledger.event;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.pocketvision.ledger.model.EventDeadLetter;
+import com.pocketvision.ledger.repository.BudgetRepository;
+import com.pocketvision.ledger.repository.EventDeadLetterRepository;
+import com.pocketvision.ledger.service.BudgetAlertService;
+import com.pocketvision.ledger.service.BudgetLedger;
+import com.pocketvision.ledger.util.MonthPeriod;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Xử lý các tác vụ phụ của thao tác ghi expense (cập nhật spent_amount của ngân sách hoặc BudgetLedger nếu bật,
+ * tạo thông báo vượt ngân sách)
+ * sau khi transaction ghi expense đã commit, trên virtual thread, để request chỉ phải chờ phần insert/update.
+ * Số handler chạy đồng thời và số sự kiện đang chờ đều có giới hạn; khi quá tải thì xử lý ngay trên thread gọi.
+ * Mỗi sự kiện chạy trong transaction riêng, thử lại vài lần, thất bại hẳn thì ghi vào bảng event_dead_letters.
+ * Khi bật BudgetLedger, delta được cộng vào bộ nhớ ngoài transaction (rollback không hoàn tác được phép cộng đó).
+ * User có sự kiện đã commit mà delta chưa áp xong được đánh dấu "đang xử lý" (xem awaitIdle) để các thao tác
+ * đặt lại spent_amount từ rollup không cộng trùng các delta đó.
+ */
+@Component
+public class ExpenseEventListener {
+
+    @Autowired
+    private BudgetRepository budgetRepository;
+
+    @Autowired
+    private BudgetAlertService budgetAlertService;
+
+    @Autowired
+    private BudgetLedger budgetLedger;
+
+    @Autowired
+    private EventDeadLetterRepository deadLetterRepository;
+
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxPending;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // userId -> số sự kiện của user mà delta ngân sách chưa áp xong (kể cả đang chờ thử lại); không có key = rảnh
+    private final Map<Long, Integer> inFlight = new ConcurrentHashMap<>();
+
+    private static final long IDLE_POLL_MILLIS = 20;
+
+    public ExpenseEventListener(
+            PlatformTransactionManager transactionManager,
+            @Value("${application.events.max-concurrency:8}") int maxConcurrency,
+            @Value("${application.events.max-pending:10000}") int maxPending,
+            @Value("${application.events.max-attempts:3}") int maxAttempts,
+            @Value("${application.events.retry-backoff-ms:200}") long retryBackoffMillis) {
+        // Luôn mở transaction mới: khi chạy trên thread gọi (quá tải) transaction cũ vẫn còn gắn với thread dù đã commit
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("expense-event-", 0).factory());
+        this.permits = new Semaphore(maxConcurrency);
+        this.maxPending = maxPending;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    // ==========================================
+    // NHẬN SỰ KIỆN (TRONG TRANSACTION GHI, XỬ LÝ SAU COMMIT)
+    // ==========================================
+
+    @EventListener
+    public void onCreated(ExpenseCreatedEvent event) {
+        Map<BudgetLedger.Key, Long> deltas = new LinkedHashMap<>();
+        addDelta(deltas, event.userId(), event.categoryId(), event.expenseDate(), event.amountMinor());
+        dispatchAfterCommit(event, deltas);
+    }
+
+    @EventListener
+    public void onUpdated(ExpenseUpdatedEvent event) {
+        Map<BudgetLedger.Key, Long> deltas = new LinkedHashMap<>();
+        addDelta(deltas, event.userId(), event.oldCategoryId(), event.oldExpenseDate(), -event.oldAmountMinor());
+        addDelta(deltas, event.userId(), event.categoryId(), event.expenseDate(), event.amountMinor());
+        dispatchAfterCommit(event, deltas);
+    }
+
+    @EventListener
+    public void onDeleted(ExpenseDeletedEvent event) {
+        Map<BudgetLedger.Key, Long> deltas = new LinkedHashMap<>();
+        addDelta(deltas, event.userId(), event.categoryId(), event.expenseDate(), -event.amountMinor());
+        dispatchAfterCommit(event, deltas);
+    }
+
+    // Gộp theo (user, danh mục, tháng): mỗi ngân sách chỉ một câu UPDATE và tối đa một thông báo
+    @EventListener
+    public void onBatchCreated(ExpensesBatchCreatedEvent event) {
+        Map<BudgetLedger.Key, Long> deltas = new LinkedHashMap<>();
+        for (ExpenseCreatedEvent created : event.expenses()) {
+            addDelta(deltas, created.userId(), created.categoryId(), created.expenseDate(), created.amountMinor());
+        }
+        dispatchAfterCommit(event, deltas);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            System.err.println("⚠️ Expense events: " + pending.get() + " sự kiện chưa xử lý xong khi tắt ứng dụng");
+            executor.shutdownNow();
+        }
+    }
+
+    // ==========================================
+    // THỰC THI, THỬ LẠI, DEAD LETTER
+    // ==========================================
+
+    /**
+     * Chờ tới khi mọi sự kiện đã commit của user áp xong delta ngân sách, tối đa timeoutMillis; false nếu hết giờ.
+     * Chỉ có nghĩa khi caller đang giữ khóa user (DailySpendRollupService.lockUser): sự kiện được đánh dấu ngay trong
+     * transaction ghi expense, lúc transaction đó còn giữ khóa, nên khi đã giữ khóa thì không có đánh dấu mới của user.
+     */
+    public boolean awaitIdle(Long userId, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (inFlight.containsKey(userId)) {
+            if (System.currentTimeMillis() >= deadline || !sleep(IDLE_POLL_MILLIS)) return false;
+        }
+        return true;
+    }
+
+    // Đánh dấu user ngay khi phát sự kiện, chạy handler sau commit; rollback thì bỏ đánh dấu.
+    // Không có transaction (gọi ngoài @Transactional) thì chạy ngay như trước
+    private void dispatchAfterCommit(Object event, Map<BudgetLedger.Key, Long> deltas) {
+        Set<Long> userIds = new HashSet<>();
+        deltas.keySet().forEach(key -> userIds.add(key.userId()));
+        userIds.forEach(userId -> inFlight.merge(userId, 1, Integer::sum));
+
+        Runnable handler = () -> {
+            try {
+                handleWithRetry(event, deltas);
+            } finally {
+                release(userIds);
+            }
+        };
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch(handler);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean dispatched;
+
+            @Override
+            public void afterCommit() {
+                dispatched = true;
+                dispatch(handler);
+            }
+
+            // afterCommit bị bỏ qua nếu một synchronization đứng trước ném lỗi; afterCompletion thì luôn được gọi
+            @Override
+            public void afterCompletion(int status) {
+                if (dispatched) return;
+                if (status == STATUS_COMMITTED) {
+                    dispatch(handler);
+                } else {
+                    release(userIds);
+                }
+            }
+        });
+    }
+
+    private void release(Set<Long> userIds) {
+        userIds.forEach(userId -> inFlight.computeIfPresent(userId, (id, count) -> count > 1 ? count - 1 : null));
+    }
+
+    private void dispatch(Runnable handler) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            handler.run();
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    handler.run();
+                } finally {
+                    permits.release();
+                    pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Executor đã dừng (đang tắt ứng dụng)
+            pending.decrementAndGet();
+            handler.run();
+        }
+    }
+
+    // BudgetLedger.apply chỉ ném lỗi trước khi cộng nên được thử lại mà không bị cộng hai lần
+    private void handleWithRetry(Object event, Map<BudgetLedger.Key, Long> deltas) {
+        RuntimeException lastError = null;
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                if (budgetLedger.isEnabled()) {
+                    budgetLedger.apply(deltas);
+                } else {
+                    transactionTemplate.executeWithoutResult(status -> applyBudgetDeltas(deltas));
+                }
+                return;
+            } catch (RuntimeException e) {
+                lastError = e;
+                System.err.println("⚠️ Expense event " + event.getClass().getSimpleName()
+                        + " thất bại (lần " + attempt + "/" + maxAttempts + "): " + e.getMessage());
+                if (attempt < maxAttempts && !sleep(retryBackoffMillis * attempt)) break;
+            }
+        }
+
+        deadLetter(event, lastError);
+    }
+
+    private void deadLetter(Object event, RuntimeException error) {
+        String message = error != null ? String.valueOf(error.getMessage()) : "interrupted";
+        System.err.println("❌ Expense event dead-lettered: " + event + " - " + message);
+
+        try {
+            EventDeadLetter letter = new EventDeadLetter();
+            letter.setEventType(event.getClass().getSimpleName());
+            letter.setPayload(event.toString());
+            letter.setError(message.length() > 1000 ? message.substring(0, 1000) : message);
+            letter.setAttempts(maxAttempts);
+            deadLetterRepository.save(letter);
+        } catch (RuntimeException e) {
+            System.err.println("❌ Không ghi được dead letter: " + e.getMessage());
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // ==========================================
+    // NGÂN SÁCH & THÔNG BÁO
+    // ==========================================
+
+    // Sửa expense sang danh mục/tháng khác thành hai delta; cùng ô thì gộp thành một (có thể bằng 0)
+    private static void addDelta(Map<BudgetLedger.Key, Long> deltas, Long userId, Long categoryId, LocalDate date, long deltaMinor) {
+        if (categoryId == null || date == null) return;
+        deltas.merge(new BudgetLedger.Key(userId, categoryId, YearMonth.from(date)), deltaMinor, Long::sum);
+    }
+
+    // Kiểm tra ngưỡng cả khi spent giảm để hạ mức cảnh báo (xem BudgetAlertService)
+    private void applyBudgetDeltas(Map<BudgetLedger.Key, Long> deltas) {
+        deltas.forEach((key, deltaMinor) -> {
+            if (deltaMinor != 0) {
+                budgetRepository.addToSpentAmount(key.userId(), key.categoryId(), MonthPeriod.toInt(key.month()), deltaMinor);
+            }
+            budgetRepository.findByUserIdAndCategoryIdAndPeriod(key.userId(), key.categoryId(), key.month())
+                    .ifPresent(budgetAlertService::evaluate);
+        });
+    }
+}
@@ -0,0 +1,25 @@
+package com.pocketvision.ledger.event;
+
+import java.time.LocalDate;
+
+import com.pocketvision.ledger.model.Expense;
+
+/**
+ * Phát ra khi một expense được cập nhật, kèm giá trị cũ (trước khi sửa) và giá trị mới.
+ * Số tiền theo đơn vị 1/100 đồng (xem Money).
+ */
+public record ExpenseUpdatedEvent(
+        Long expenseId,
+        Long userId,
+        Long oldCategoryId,
+        LocalDate oldExpenseDate,
+        long oldAmountMinor,
+        Long categoryId,
+        LocalDate expenseDate,
+        long amountMinor) {
+
+    public static ExpenseUpdatedEvent of(Expense updated, Long oldCategoryId, LocalDate oldExpenseDate, long oldAmountMinor) {
+        return new ExpenseUpdatedEvent(updated.getId(), updated.getUserId(), oldCategoryId, oldExpenseDate, oldAmountMinor,
+                updated.getCategoryId(), updated.getExpenseDate(), updated.getTotalAmountMinor());
+    }
+}
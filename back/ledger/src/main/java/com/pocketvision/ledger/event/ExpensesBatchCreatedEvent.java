@@ -0,0 +1,10 @@
+package com.pocketvision.ledger.event;
+
+import java.util.List;
+
+/**
+ * Phát ra một lần cho cả lô khi tạo nhiều expense, để ngân sách chỉ được cập nhật và thông báo một lần cho mỗi
+ * (user, danh mục, tháng) thay vì một lần cho mỗi dòng.
+ */
+public record ExpensesBatchCreatedEvent(List<ExpenseCreatedEvent> expenses) {
+}
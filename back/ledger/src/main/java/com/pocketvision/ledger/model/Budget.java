@@ -1,18 +1,31 @@
 package com.pocketvision.ledger.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.pocketvision.ledger.util.MonthPeriod;
+import com.pocketvision.ledger.util.MonthPeriodConverter;
+import com.pocketvision.ledger.util.Money;
+import com.pocketvision.ledger.util.MoneyConverter;
+
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 
 @Entity
 @Table(name = "budgets",
-       uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "category_id", "month_year"}))
+       uniqueConstraints = @UniqueConstraint(name = "uniq_budget", columnNames = {"user_id", "category_id", "period"}),
+       indexes = @Index(name = "idx_budget_user_period", columnList = "user_id, period"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Budget {
 
+    // Mức cảnh báo đã thông báo gần nhất (xem BudgetAlertService)
+    public enum AlertLevel {
+        NONE, WARNING, EXCEEDED
+    }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -23,14 +36,25 @@ public class Budget {
     @Column(name = "category_id", nullable = false)
     private Long categoryId;
 
-    @Column(name = "month_year", nullable = false, length = 7)
-    private String monthYear; // format: yyyy-MM
+    // Lưu INT yyyymm (xem MonthPeriod); JSON vẫn là monthYear "yyyy-MM"
+    @JsonIgnore
+    @Convert(converter = MonthPeriodConverter.class)
+    @Column(name = "period", nullable = false)
+    private YearMonth period;
 
-    @Column(name = "limit_amount", nullable = false)
-    private Double limitAmount;
+    // Đơn vị 1/100 đồng (xem Money); JSON vẫn là số tiền theo đồng
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "limit_amount", nullable = false, precision = 12, scale = 2)
+    private Long limitAmount;
 
-    @Column(name = "spent_amount", nullable = false)
-    private Double spentAmount = 0.0;
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "spent_amount", nullable = false, precision = 12, scale = 2)
+    private Long spentAmount = 0L;
+
+    @JsonIgnore
+    @Enumerated(EnumType.STRING)
+    @Column(name = "alert_level", nullable = false, length = 10)
+    private AlertLevel alertLevel = AlertLevel.NONE;
 
     @Column(name = "created_at", updatable = false, insertable = false,
             columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP")
@@ -39,4 +63,22 @@ public class Budget {
     @Column(name = "updated_at", insertable = false,
             columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP")
     private LocalDateTime updatedAt;
+
+    // null nếu thiếu hoặc sai định dạng "yyyy-MM"
+    public String getMonthYear() { return MonthPeriod.format(period); }
+    public void setMonthYear(String monthYear) { this.period = MonthPeriod.parse(monthYear); }
+
+    public Double getLimitAmount() { return Money.toMajor(limitAmount); }
+    public void setLimitAmount(Double limitAmount) { this.limitAmount = Money.toMinor(limitAmount); }
+
+    public Double getSpentAmount() { return Money.toMajor(spentAmount); }
+    public void setSpentAmount(Double spentAmount) { this.spentAmount = Money.toMinor(spentAmount); }
+
+    @JsonIgnore
+    public Long getLimitAmountMinor() { return limitAmount; }
+    public void setLimitAmountMinor(Long limitAmountMinor) { this.limitAmount = limitAmountMinor; }
+
+    @JsonIgnore
+    public Long getSpentAmountMinor() { return spentAmount; }
+    public void setSpentAmountMinor(Long spentAmountMinor) { this.spentAmount = spentAmountMinor; }
 }
@@ -0,0 +1,56 @@
+package com.pocketvision.ledger.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.pocketvision.ledger.util.Money;
+import com.pocketvision.ledger.util.MoneyConverter;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mẫu ngân sách lặp lại hằng tháng (tùy chọn, mỗi user tự bật cho từng danh mục).
+ * Job BudgetTemplateService tạo Budget của tháng mới từ các mẫu đang bật khi sang tháng.
+ */
+@Entity
+@Table(name = "budget_templates",
+       uniqueConstraints = @UniqueConstraint(name = "uniq_budget_template", columnNames = {"user_id", "category_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BudgetTemplate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "category_id", nullable = false)
+    private Long categoryId;
+
+    // Đơn vị 1/100 đồng (xem Money); JSON vẫn là số tiền theo đồng
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "limit_amount", nullable = false, precision = 12, scale = 2)
+    private Long limitAmount;
+
+    @Column(nullable = false)
+    private Boolean active = true;
+
+    @Column(name = "created_at", updatable = false, insertable = false,
+            columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", insertable = false,
+            columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP")
+    private LocalDateTime updatedAt;
+
+    public Double getLimitAmount() { return Money.toMajor(limitAmount); }
+    public void setLimitAmount(Double limitAmount) { this.limitAmount = Money.toMinor(limitAmount); }
+
+    @JsonIgnore
+    public Long getLimitAmountMinor() { return limitAmount; }
+    public void setLimitAmountMinor(Long limitAmountMinor) { this.limitAmount = limitAmountMinor; }
+}
@@ -0,0 +1,59 @@
+package com.pocketvision.ledger.model;
+
+import com.pocketvision.ledger.util.MoneyConverter;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Bảng tổng hợp chi tiêu theo ngày, mỗi dòng là một ô (user, ngày, danh mục, phương thức thanh toán).
+ * Được cập nhật trong cùng transaction với thao tác ghi expense, báo cáo và ngân sách đọc từ đây
+ * thay vì quét bảng expenses.
+ */
+@Entity
+@Table(name = "daily_spend_rollup",
+       uniqueConstraints = @UniqueConstraint(name = "uniq_rollup_cell",
+               columnNames = {"user_id", "spend_date", "category_id", "payment_method"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailySpendRollup {
+
+    // category_id = 0 đại diện cho expense không có danh mục (tránh NULL trong unique key)
+    public static final long NO_CATEGORY = 0L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "spend_date", nullable = false)
+    private LocalDate spendDate;
+
+    @Column(name = "category_id", nullable = false)
+    private Long categoryId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method", nullable = false, length = 20)
+    private Expense.PaymentMethod paymentMethod;
+
+    // Các cột tiền theo đơn vị 1/100 đồng (xem Money), chỉ dùng nội bộ cho báo cáo/ngân sách
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "total_amount", nullable = false, precision = 14, scale = 2)
+    private Long totalAmountMinor;
+
+    @Column(name = "expense_count", nullable = false)
+    private Long expenseCount;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "min_amount", nullable = false, precision = 12, scale = 2)
+    private Long minAmountMinor;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "max_amount", nullable = false, precision = 12, scale = 2)
+    private Long maxAmountMinor;
+}
@@ -0,0 +1,42 @@
+package com.pocketvision.ledger.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sự kiện xử lý sau commit đã thất bại sau khi hết số lần thử lại.
+ * Giữ lại payload để tra cứu/xử lý lại thủ công; spent_amount bị lệch sẽ được job đối soát ngân sách sửa.
+ */
+@Entity
+@Table(name = "event_dead_letters")
+@Data
+@NoArgsConstructor
+public class EventDeadLetter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_type", nullable = false, length = 100)
+    private String eventType;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(length = 1000)
+    private String error;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -2,17 +2,34 @@ package com.pocketvision.ledger.model;
 
 import java.time.LocalDate;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.pocketvision.ledger.util.ExpenseFingerprint;
+import com.pocketvision.ledger.util.Money;
+import com.pocketvision.ledger.util.MoneyConverter;
+import com.pocketvision.ledger.util.TextNormalizer;
+
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
 @Entity
-@Table(name = "expenses")
+@Table(name = "expenses",
+       indexes = {
+           @Index(name = "idx_expense_user_date", columnList = "user_id, expense_date"),
+           @Index(name = "idx_expense_user_fingerprint", columnList = "user_id, fingerprint")
+       })
 public class Expense {
 
     @Id
@@ -25,8 +42,10 @@ public class Expense {
     private Long categoryId;
     private String storeName;
 
-    @Column(nullable = false)
-    private Double totalAmount;
+    // Đơn vị 1/100 đồng (xem Money); JSON vẫn là số tiền theo đồng qua getTotalAmount/setTotalAmount
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false, precision = 12, scale = 2)
+    private Long totalAmount;
 
     @Enumerated(EnumType.STRING)
     @Column(length = 20)
@@ -37,6 +56,26 @@ public class Expense {
     @Column(name = "expense_date", nullable = false)
     private LocalDate expenseDate;
 
+    // Bản không dấu, chữ thường của storeName/note, tính khi ghi để tìm kiếm không cần gọi hàm trên từng dòng
+    @JsonIgnore
+    @Column(name = "store_name_search", length = 150)
+    private String storeNameSearch;
+
+    @JsonIgnore
+    @Column(name = "note_search", length = 255)
+    private String noteSearch;
+
+    // SHA-256 của (user, số tiền, ngày, cửa hàng không dấu) để tra khoản chi trùng bằng index (xem ExpenseFingerprint)
+    @JsonIgnore
+    @Column(length = 64)
+    private String fingerprint;
+
+    // Chỉ có trong response tạo mới: true nếu đã có khoản chi cùng dấu vân tay
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Boolean possibleDuplicate;
+
 
 
     @Column(updatable = false, insertable = false, columnDefinition = "TIMESTAMP DEFAULT CURRENT_TIMESTAMP")
@@ -59,8 +98,12 @@ public class Expense {
     public String getStoreName() { return storeName; }
     public void setStoreName(String storeName) { this.storeName = storeName; }
 
-    public Double getTotalAmount() { return totalAmount; }
-    public void setTotalAmount(Double totalAmount) { this.totalAmount = totalAmount; }
+    public Double getTotalAmount() { return Money.toMajor(totalAmount); }
+    public void setTotalAmount(Double totalAmount) { this.totalAmount = Money.toMinor(totalAmount); }
+
+    @JsonIgnore
+    public Long getTotalAmountMinor() { return totalAmount; }
+    public void setTotalAmountMinor(Long totalAmountMinor) { this.totalAmount = totalAmountMinor; }
 
     public PaymentMethod getPaymentMethod() { return paymentMethod; }
     public void setPaymentMethod(PaymentMethod paymentMethod) { this.paymentMethod = paymentMethod; }
@@ -72,4 +115,25 @@ public class Expense {
     public void setExpenseDate(LocalDate expenseDate) { this.expenseDate = expenseDate; }
 
     public java.sql.Timestamp getCreatedAt() { return createdAt; }
+
+    public String getStoreNameSearch() { return storeNameSearch; }
+
+    public String getNoteSearch() { return noteSearch; }
+
+    public String getFingerprint() { return fingerprint; }
+
+    public Boolean getPossibleDuplicate() { return possibleDuplicate; }
+    public void setPossibleDuplicate(Boolean possibleDuplicate) { this.possibleDuplicate = possibleDuplicate; }
+
+    public String computeFingerprint() {
+        return ExpenseFingerprint.of(userId, totalAmount, expenseDate, storeName);
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void updateSearchFields() {
+        this.storeNameSearch = TextNormalizer.normalize(storeName);
+        this.noteSearch = TextNormalizer.normalize(note);
+        this.fingerprint = computeFingerprint();
+    }
 }
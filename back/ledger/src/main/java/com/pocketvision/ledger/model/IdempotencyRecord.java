@@ -0,0 +1,48 @@
+package com.pocketvision.ledger.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả đã lưu của một request ghi có header Idempotency-Key.
+ * Được insert và lưu response trong cùng transaction với thao tác ghi; statusCode = null chỉ còn ở dữ liệu cũ
+ * (khi giữ chỗ từng được commit riêng trước lúc ghi).
+ */
+@Entity
+@Table(name = "idempotency_keys",
+       uniqueConstraints = @UniqueConstraint(name = "uniq_idempotency_scope_key", columnNames = {"scope", "idem_key"}),
+       indexes = @Index(name = "idx_idempotency_expires", columnList = "expires_at"))
+@Data
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Endpoint + user, để cùng một key ở hai endpoint/user khác nhau không đụng nhau
+    @Column(nullable = false, length = 100)
+    private String scope;
+
+    @Column(name = "idem_key", nullable = false, length = 100)
+    private String key;
+
+    // SHA-256 của body request, để phát hiện dùng lại key cho request khác
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "status_code")
+    private Integer statusCode;
+
+    @Lob
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -5,10 +5,14 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.pocketvision.ledger.util.Money;
+import com.pocketvision.ledger.util.MoneyConverter;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
@@ -41,8 +45,10 @@ public class Invoice {
     @Column(name = "invoice_date", nullable = false)
     private LocalDate invoiceDate;
 
-    @Column(name = "total_amount", nullable = false)
-    private Double totalAmount;
+    // Đơn vị 1/100 đồng (xem Money); JSON vẫn là số tiền theo đồng
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "total_amount", nullable = false, precision = 12, scale = 2)
+    private Long totalAmount;
 
     @Enumerated(EnumType.STRING)
     @Column(name = "payment_method")
@@ -64,6 +70,13 @@ public class Invoice {
     @JsonManagedReference // Để tránh lỗi vòng lặp vô hạn khi convert sang JSON
     private List<InvoiceItem> items = new ArrayList<>();
 
+    public Double getTotalAmount() { return Money.toMajor(totalAmount); }
+    public void setTotalAmount(Double totalAmount) { this.totalAmount = Money.toMinor(totalAmount); }
+
+    @JsonIgnore
+    public Long getTotalAmountMinor() { return totalAmount; }
+    public void setTotalAmountMinor(Long totalAmountMinor) { this.totalAmount = totalAmountMinor; }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -1,8 +1,12 @@
 package com.pocketvision.ledger.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference; // Import cái này
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.pocketvision.ledger.util.Money;
+import com.pocketvision.ledger.util.MoneyConverter;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
@@ -32,9 +36,26 @@ public class InvoiceItem {
     @Column(name = "quantity", nullable = false)
     private Integer quantity;
 
-    @Column(name = "unit_price", nullable = false)
-    private Double unitPrice;
+    // Đơn vị 1/100 đồng (xem Money); JSON vẫn là số tiền theo đồng
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "unit_price", nullable = false, precision = 10, scale = 2)
+    private Long unitPrice;
 
-    @Column(name = "total_price", nullable = false)
-    private Double totalPrice;
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "total_price", nullable = false, precision = 12, scale = 2)
+    private Long totalPrice;
+
+    public Double getUnitPrice() { return Money.toMajor(unitPrice); }
+    public void setUnitPrice(Double unitPrice) { this.unitPrice = Money.toMinor(unitPrice); }
+
+    public Double getTotalPrice() { return Money.toMajor(totalPrice); }
+    public void setTotalPrice(Double totalPrice) { this.totalPrice = Money.toMinor(totalPrice); }
+
+    @JsonIgnore
+    public Long getUnitPriceMinor() { return unitPrice; }
+    public void setUnitPriceMinor(Long unitPriceMinor) { this.unitPrice = unitPriceMinor; }
+
+    @JsonIgnore
+    public Long getTotalPriceMinor() { return totalPrice; }
+    public void setTotalPriceMinor(Long totalPriceMinor) { this.totalPrice = totalPriceMinor; }
 }
\ No newline at end of file
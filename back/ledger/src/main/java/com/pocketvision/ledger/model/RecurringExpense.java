@@ -0,0 +1,98 @@
+package com.pocketvision.ledger.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.pocketvision.ledger.util.Money;
+import com.pocketvision.ledger.util.MoneyConverter;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Quy tắc chi tiêu định kỳ (tiền nhà, thuê bao, điện nước...). Job RecurringExpenseService tạo expense
+ * cho mọi lần phát sinh đến hạn, bắt đầu từ nextRunDate, rồi dời nextRunDate sang lần kế tiếp.
+ */
+@Entity
+@Table(name = "recurring_expenses",
+       indexes = {
+           @Index(name = "idx_recurring_due", columnList = "active, next_run_date"),
+           @Index(name = "idx_recurring_user", columnList = "user_id")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringExpense {
+
+    public enum Interval {
+        DAY, WEEK, MONTH, YEAR
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "category_id", nullable = false)
+    private Long categoryId;
+
+    @Column(name = "store_name", length = 150)
+    private String storeName;
+
+    // Đơn vị 1/100 đồng (xem Money); JSON vẫn là số tiền theo đồng
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "total_amount", nullable = false, precision = 12, scale = 2)
+    private Long totalAmount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method", length = 20)
+    private Expense.PaymentMethod paymentMethod = Expense.PaymentMethod.OTHER;
+
+    @Column(length = 255)
+    private String note;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "interval_unit", nullable = false, length = 10)
+    private Interval intervalUnit = Interval.MONTH;
+
+    // Mỗi intervalCount đơn vị phát sinh một lần (ví dụ MONTH + 3 = mỗi quý)
+    @Column(name = "interval_count", nullable = false)
+    private Integer intervalCount = 1;
+
+    // Ngày phát sinh đầu tiên; ngày trong tháng của startDate được giữ cố định cho MONTH/YEAR
+    @Column(name = "start_date", nullable = false)
+    private LocalDate startDate;
+
+    // Lần phát sinh kế tiếp chưa được tạo expense
+    @Column(name = "next_run_date", nullable = false)
+    private LocalDate nextRunDate;
+
+    // Không phát sinh sau ngày này (null = không giới hạn)
+    @Column(name = "end_date")
+    private LocalDate endDate;
+
+    @Column(nullable = false)
+    private Boolean active = true;
+
+    // Lý do job tự tắt quy tắc (lần phát sinh bị từ chối); xóa khi quy tắc được cập nhật
+    @Column(name = "last_error", length = 255)
+    private String lastError;
+
+    @Column(name = "created_at", updatable = false, insertable = false,
+            columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", insertable = false,
+            columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP")
+    private LocalDateTime updatedAt;
+
+    public Double getTotalAmount() { return Money.toMajor(totalAmount); }
+    public void setTotalAmount(Double totalAmount) { this.totalAmount = Money.toMinor(totalAmount); }
+
+    @JsonIgnore
+    public Long getTotalAmountMinor() { return totalAmount; }
+    public void setTotalAmountMinor(Long totalAmountMinor) { this.totalAmount = totalAmountMinor; }
+}
@@ -2,14 +2,83 @@ package com.pocketvision.ledger.repository;
 
 import com.pocketvision.ledger.model.Budget;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface BudgetRepository extends JpaRepository<Budget, Long> {
     List<Budget> findByUserId(Long userId);
-    List<Budget> findByUserIdAndMonthYear(Long userId, String monthYear);
-    Optional<Budget> findByUserIdAndCategoryIdAndMonthYear(Long userId, Long categoryId, String monthYear);
+    List<Budget> findByUserIdAndPeriod(Long userId, YearMonth period);
+    Optional<Budget> findByUserIdAndCategoryIdAndPeriod(Long userId, Long categoryId, YearMonth period);
+
+    interface SpentTotal {
+        Long getBudgetId();
+        Long getSpentMinor();
+    }
+
+    // Tổng chi thực tế (1/100 đồng) của mọi ngân sách của user (period yyyymm, null = mọi tháng) trong một câu GROUP BY
+    @Query(value = """
+        SELECT b.id AS budgetId, CAST(COALESCE(SUM(r.total_amount), 0) * 100 AS SIGNED) AS spentMinor
+        FROM budgets b
+        LEFT JOIN daily_spend_rollup r
+          ON r.user_id = b.user_id AND r.category_id = b.category_id
+         AND r.spend_date >= STR_TO_DATE(b.period * 100 + 1, '%Y%m%d')
+         AND r.spend_date < DATE_ADD(STR_TO_DATE(b.period * 100 + 1, '%Y%m%d'), INTERVAL 1 MONTH)
+        WHERE b.user_id = :userId AND (:period IS NULL OR b.period = :period)
+        GROUP BY b.id
+    """, nativeQuery = true)
+    List<SpentTotal> sumSpentByBudget(@Param("userId") Long userId, @Param("period") Integer period);
+
+    // Cộng dồn nguyên tử vào spent_amount (delta âm khi xóa/giảm); trả về 0 nếu chưa có ngân sách cho key này.
+    // deltaMinor theo đơn vị 1/100 đồng (xem Money), period là yyyymm (xem MonthPeriod); phép chia trong MySQL cho kết quả DECIMAL chính xác
+    @Modifying(flushAutomatically = true)
+    @Query(value = """
+        UPDATE budgets SET spent_amount = spent_amount + :deltaMinor / 100
+        WHERE user_id = :userId AND category_id = :categoryId AND period = :period
+    """, nativeQuery = true)
+    int addToSpentAmount(
+            @Param("userId") Long userId,
+            @Param("categoryId") Long categoryId,
+            @Param("period") int period,
+            @Param("deltaMinor") long deltaMinor
+    );
+
+    // Đổi mức cảnh báo chỉ khi mức trong DB vẫn là expectedLevel; trả về 0 nếu đã bị lần ghi khác đổi trước
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE budgets SET alert_level = :newLevel WHERE id = :id AND alert_level = :expectedLevel", nativeQuery = true)
+    int compareAndSetAlertLevel(
+            @Param("id") Long id,
+            @Param("expectedLevel") String expectedLevel,
+            @Param("newLevel") String newLevel
+    );
+
+    // Id các user có ngân sách, theo lô tăng dần sau afterId (duyệt bằng uniq_budget, cột đầu là user_id)
+    @Query(value = "SELECT DISTINCT user_id FROM budgets WHERE user_id > :afterId ORDER BY user_id LIMIT :limit", nativeQuery = true)
+    List<Long> findUserIdsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    // Đối soát một user: đặt lại spent_amount theo tổng thực tế từ daily_spend_rollup, chỉ những dòng bị lệch.
+    // Caller phải giữ khóa user và chờ hết delta đang xử lý (xem BudgetServiceImpl.reconcileSpentAmounts)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+        UPDATE budgets b
+        JOIN (
+            SELECT b2.id AS budget_id, COALESCE(SUM(r.total_amount), 0) AS actual
+            FROM budgets b2
+            LEFT JOIN daily_spend_rollup r
+              ON r.user_id = b2.user_id AND r.category_id = b2.category_id
+             AND r.spend_date >= STR_TO_DATE(b2.period * 100 + 1, '%Y%m%d')
+             AND r.spend_date < DATE_ADD(STR_TO_DATE(b2.period * 100 + 1, '%Y%m%d'), INTERVAL 1 MONTH)
+            WHERE b2.user_id = :userId
+            GROUP BY b2.id
+        ) t ON t.budget_id = b.id
+        SET b.spent_amount = t.actual
+        WHERE b.spent_amount <> t.actual
+    """, nativeQuery = true)
+    int reconcileSpentAmounts(@Param("userId") Long userId);
 }
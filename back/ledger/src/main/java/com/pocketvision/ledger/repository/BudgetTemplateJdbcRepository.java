@@ -0,0 +1,77 @@
+package com.pocketvision.ledger.repository;
+
+import java.sql.Date;
+import java.time.YearMonth;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.pocketvision.ledger.util.MonthPeriod;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Truy vấn cho job tạo ngân sách tháng mới từ budget_templates: duyệt mẫu theo khoảng id và tạo cả lô
+ * Budget bằng một câu INSERT ... SELECT.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BudgetTemplateJdbcRepository {
+
+    private static final String NEXT_CHUNK_SQL = """
+        SELECT id FROM budget_templates
+        WHERE active = TRUE AND id > ?
+        ORDER BY id
+        LIMIT ?
+    """;
+
+    // Ngân sách đã có bị bỏ qua nhờ uniq_budget (user_id, category_id, period): ON DUPLICATE KEY UPDATE id = id
+    // không đổi giá trị nào, nên chạy lại cho cùng một tháng không tạo trùng và không ghi đè ngân sách user đã tự sửa.
+    // Khác INSERT IGNORE, các lỗi khác (sai kiểu, vi phạm khóa ngoại, cắt dữ liệu...) vẫn được báo thay vì bị nuốt
+    // thành warning. spent_amount lấy luôn từ daily_spend_rollup (thường là 0, trừ khi đã có expense ghi trước cho tháng đó)
+    private static final String INSERT_CHUNK_SQL = """
+        INSERT INTO budgets (user_id, category_id, period, limit_amount, spent_amount, alert_level)
+        SELECT t.user_id, t.category_id, ?, t.limit_amount,
+               COALESCE((SELECT SUM(r.total_amount) FROM daily_spend_rollup r
+                         WHERE r.user_id = t.user_id AND r.category_id = t.category_id
+                           AND r.spend_date >= ? AND r.spend_date < ?), 0),
+               'NONE'
+        FROM budget_templates t
+        WHERE t.active = TRUE AND t.id > ? AND t.id <= ?
+        ON DUPLICATE KEY UPDATE id = id
+    """;
+
+    // Số dòng câu INSERT trên sẽ tạo mới. Không dùng update count: với ON DUPLICATE KEY UPDATE, dòng trùng được tính
+    // là 1 hay 0 tùy cờ useAffectedRows của connector (mặc định là 1)
+    private static final String COUNT_MISSING_SQL = """
+        SELECT COUNT(*) FROM budget_templates t
+        WHERE t.active = TRUE AND t.id > ? AND t.id <= ?
+          AND NOT EXISTS (SELECT 1 FROM budgets b
+                          WHERE b.user_id = t.user_id AND b.category_id = t.category_id AND b.period = ?)
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Id của lô mẫu kế tiếp (đang bật) sau afterId
+    public List<Long> nextChunk(long afterId, int limit) {
+        return jdbcTemplate.queryForList(NEXT_CHUNK_SQL, Long.class, afterId, limit);
+    }
+
+    // Tạo ngân sách tháng month cho các mẫu có id trong (fromIdExclusive, toIdInclusive]; trả về số dòng đã tạo.
+    // Gọi trong transaction để phép đếm và câu INSERT nhìn cùng một trạng thái
+    public int insertBudgets(YearMonth month, long fromIdExclusive, long toIdInclusive) {
+        int period = MonthPeriod.toInt(month);
+        Integer missing = jdbcTemplate.queryForObject(COUNT_MISSING_SQL, Integer.class,
+                fromIdExclusive, toIdInclusive, period);
+        if (missing == null || missing == 0) return 0;
+
+        jdbcTemplate.update(INSERT_CHUNK_SQL,
+                period,
+                Date.valueOf(month.atDay(1)),
+                Date.valueOf(month.plusMonths(1).atDay(1)),
+                fromIdExclusive,
+                toIdInclusive);
+        return missing;
+    }
+}
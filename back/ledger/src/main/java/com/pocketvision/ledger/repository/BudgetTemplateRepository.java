@@ -0,0 +1,17 @@
+package com.pocketvision.ledger.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.pocketvision.ledger.model.BudgetTemplate;
+
+@Repository
+public interface BudgetTemplateRepository extends JpaRepository<BudgetTemplate, Long> {
+
+    List<BudgetTemplate> findByUserIdOrderByCategoryIdAsc(Long userId);
+
+    Optional<BudgetTemplate> findByUserIdAndCategoryId(Long userId, Long categoryId);
+}
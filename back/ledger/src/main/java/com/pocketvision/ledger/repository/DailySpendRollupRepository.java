@@ -0,0 +1,186 @@
+package com.pocketvision.ledger.repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.pocketvision.ledger.dto.CategoryExpenseAggregate;
+import com.pocketvision.ledger.dto.DailyExpenseAggregate;
+import com.pocketvision.ledger.dto.PaymentMethodExpenseAggregate;
+import com.pocketvision.ledger.model.DailySpendRollup;
+
+@Repository
+public interface DailySpendRollupRepository extends JpaRepository<DailySpendRollup, Long> {
+
+    // ==========================================
+    // CẬP NHẬT ROLLUP (GỌI TRONG TRANSACTION GHI EXPENSE)
+    // ==========================================
+
+    // Khóa dòng users theo thứ tự id tăng dần (xem DailySpendRollupService.lockUsers)
+    @Query(value = "SELECT id FROM users WHERE id IN (:userIds) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockUsers(@Param("userIds") Collection<Long> userIds);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = """
+        DELETE FROM daily_spend_rollup
+        WHERE user_id = :userId AND spend_date = :day
+          AND category_id = :categoryId AND payment_method = :paymentMethod
+    """, nativeQuery = true)
+    int deleteCell(
+            @Param("userId") Long userId,
+            @Param("day") LocalDate day,
+            @Param("categoryId") Long categoryId,
+            @Param("paymentMethod") String paymentMethod
+    );
+
+    // Tính lại một ô từ bảng expenses (dùng index user_id + expense_date)
+    @Modifying
+    @Query(value = """
+        INSERT INTO daily_spend_rollup
+            (user_id, spend_date, category_id, payment_method, total_amount, expense_count, min_amount, max_amount)
+        SELECT e.user_id, e.expense_date, COALESCE(e.category_id, 0), COALESCE(e.payment_method, 'OTHER'),
+               SUM(e.total_amount), COUNT(*), MIN(e.total_amount), MAX(e.total_amount)
+        FROM expenses e
+        WHERE e.user_id = :userId AND e.expense_date = :day
+          AND COALESCE(e.category_id, 0) = :categoryId
+          AND COALESCE(e.payment_method, 'OTHER') = :paymentMethod
+        GROUP BY e.user_id, e.expense_date, COALESCE(e.category_id, 0), COALESCE(e.payment_method, 'OTHER')
+    """, nativeQuery = true)
+    int insertCellFromExpenses(
+            @Param("userId") Long userId,
+            @Param("day") LocalDate day,
+            @Param("categoryId") Long categoryId,
+            @Param("paymentMethod") String paymentMethod
+    );
+
+    // Tính lại toàn bộ các ô của một user trong các ngày cho trước (dùng cho ghi theo lô)
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM daily_spend_rollup WHERE user_id = :userId AND spend_date IN (:days)", nativeQuery = true)
+    int deleteDays(@Param("userId") Long userId, @Param("days") Collection<LocalDate> days);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO daily_spend_rollup
+            (user_id, spend_date, category_id, payment_method, total_amount, expense_count, min_amount, max_amount)
+        SELECT e.user_id, e.expense_date, COALESCE(e.category_id, 0), COALESCE(e.payment_method, 'OTHER'),
+               SUM(e.total_amount), COUNT(*), MIN(e.total_amount), MAX(e.total_amount)
+        FROM expenses e
+        WHERE e.user_id = :userId AND e.expense_date IN (:days)
+        GROUP BY e.user_id, e.expense_date, COALESCE(e.category_id, 0), COALESCE(e.payment_method, 'OTHER')
+    """, nativeQuery = true)
+    int rebuildDays(@Param("userId") Long userId, @Param("days") Collection<LocalDate> days);
+
+    // ==========================================
+    // REBUILD / BACKFILL
+    // ==========================================
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM daily_spend_rollup WHERE user_id = :userId", nativeQuery = true)
+    int deleteByUser(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO daily_spend_rollup
+            (user_id, spend_date, category_id, payment_method, total_amount, expense_count, min_amount, max_amount)
+        SELECT e.user_id, e.expense_date, COALESCE(e.category_id, 0), COALESCE(e.payment_method, 'OTHER'),
+               SUM(e.total_amount), COUNT(*), MIN(e.total_amount), MAX(e.total_amount)
+        FROM expenses e
+        WHERE e.user_id = :userId
+        GROUP BY e.user_id, e.expense_date, COALESCE(e.category_id, 0), COALESCE(e.payment_method, 'OTHER')
+    """, nativeQuery = true)
+    int rebuildForUser(@Param("userId") Long userId);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM daily_spend_rollup", nativeQuery = true)
+    int deleteAllCells();
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO daily_spend_rollup
+            (user_id, spend_date, category_id, payment_method, total_amount, expense_count, min_amount, max_amount)
+        SELECT e.user_id, e.expense_date, COALESCE(e.category_id, 0), COALESCE(e.payment_method, 'OTHER'),
+               SUM(e.total_amount), COUNT(*), MIN(e.total_amount), MAX(e.total_amount)
+        FROM expenses e
+        GROUP BY e.user_id, e.expense_date, COALESCE(e.category_id, 0), COALESCE(e.payment_method, 'OTHER')
+    """, nativeQuery = true)
+    int rebuildAll();
+
+    // ==========================================
+    // TRUY VẤN ĐỌC CHO BÁO CÁO / NGÂN SÁCH
+    // ==========================================
+
+    // Tổng theo đơn vị 1/100 đồng (xem Money), tính bằng DECIMAL trong DB rồi đổi sang số nguyên
+    @Query(value = """
+        SELECT CAST(COALESCE(SUM(total_amount), 0) * 100 AS SIGNED) FROM daily_spend_rollup
+        WHERE user_id = :userId
+    """, nativeQuery = true)
+    long sumTotalAmountMinorByUserId(@Param("userId") Long userId);
+
+    @Query(value = """
+        SELECT CAST(COALESCE(SUM(total_amount), 0) * 100 AS SIGNED) FROM daily_spend_rollup
+        WHERE user_id = :userId AND category_id = :categoryId
+          AND spend_date BETWEEN :startDate AND :endDate
+    """, nativeQuery = true)
+    long sumTotalAmountMinorForCategory(
+            @Param("userId") Long userId,
+            @Param("categoryId") Long categoryId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate
+    );
+
+    // Gộp các ô rollup theo một chiều ngay trong DB (số dòng trả về = số ngày / danh mục / phương thức),
+    // tiền đổi sang 1/100 đồng như các truy vấn tổng ở trên
+    @Query(value = """
+        SELECT spend_date AS spendDate,
+               CAST(SUM(total_amount) * 100 AS SIGNED) AS totalAmountMinor,
+               CAST(SUM(expense_count) AS SIGNED) AS expenseCount,
+               CAST(MIN(min_amount) * 100 AS SIGNED) AS minAmountMinor,
+               CAST(MAX(max_amount) * 100 AS SIGNED) AS maxAmountMinor
+        FROM daily_spend_rollup
+        WHERE user_id = :userId AND spend_date BETWEEN :startDate AND :endDate
+        GROUP BY spend_date
+    """, nativeQuery = true)
+    List<DailyExpenseAggregate> aggregateByDay(
+            @Param("userId") Long userId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate
+    );
+
+    @Query(value = """
+        SELECT NULLIF(category_id, 0) AS categoryId,
+               CAST(SUM(total_amount) * 100 AS SIGNED) AS totalAmountMinor,
+               CAST(SUM(expense_count) AS SIGNED) AS expenseCount,
+               CAST(MIN(min_amount) * 100 AS SIGNED) AS minAmountMinor,
+               CAST(MAX(max_amount) * 100 AS SIGNED) AS maxAmountMinor
+        FROM daily_spend_rollup
+        WHERE user_id = :userId AND spend_date BETWEEN :startDate AND :endDate
+        GROUP BY category_id
+    """, nativeQuery = true)
+    List<CategoryExpenseAggregate> aggregateByCategory(
+            @Param("userId") Long userId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate
+    );
+
+    @Query(value = """
+        SELECT payment_method AS paymentMethod,
+               CAST(SUM(total_amount) * 100 AS SIGNED) AS totalAmountMinor,
+               CAST(SUM(expense_count) AS SIGNED) AS expenseCount,
+               CAST(MIN(min_amount) * 100 AS SIGNED) AS minAmountMinor,
+               CAST(MAX(max_amount) * 100 AS SIGNED) AS maxAmountMinor
+        FROM daily_spend_rollup
+        WHERE user_id = :userId AND spend_date BETWEEN :startDate AND :endDate
+        GROUP BY payment_method
+    """, nativeQuery = true)
+    List<PaymentMethodExpenseAggregate> aggregateByPaymentMethod(
+            @Param("userId") Long userId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate
+    );
+}
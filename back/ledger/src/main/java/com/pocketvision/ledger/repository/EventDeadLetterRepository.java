@@ -0,0 +1,10 @@
+package com.pocketvision.ledger.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.pocketvision.ledger.model.EventDeadLetter;
+
+@Repository
+public interface EventDeadLetterRepository extends JpaRepository<EventDeadLetter, Long> {
+}
@@ -0,0 +1,81 @@
+package com.pocketvision.ledger.repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.util.Money;
+import com.pocketvision.ledger.util.TextNormalizer;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Ghi expense theo lô bằng JDBC batch (JPA với IDENTITY không batch được INSERT).
+ * Với MySQL nên bật rewriteBatchedStatements=true trên JDBC URL để mỗi lô thành một câu INSERT nhiều dòng.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ExpenseJdbcRepository {
+
+    private static final String INSERT_SQL = """
+        INSERT INTO expenses
+            (user_id, category_id, store_name, store_name_search, total_amount, payment_method,
+             note, note_search, expense_date, fingerprint)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert cả danh sách trong một lô và gán ID sinh ra vào từng expense (theo đúng thứ tự).
+     */
+    public void batchInsert(List<Expense> expenses) {
+        if (expenses.isEmpty()) return;
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+            connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    Expense e = expenses.get(i);
+                    Expense.PaymentMethod method = e.getPaymentMethod() != null ? e.getPaymentMethod() : Expense.PaymentMethod.OTHER;
+
+                    ps.setLong(1, e.getUserId());
+                    if (e.getCategoryId() != null) ps.setLong(2, e.getCategoryId()); else ps.setNull(2, Types.BIGINT);
+                    ps.setString(3, e.getStoreName());
+                    ps.setString(4, TextNormalizer.normalize(e.getStoreName()));
+                    ps.setBigDecimal(5, Money.toDecimal(e.getTotalAmountMinor()));
+                    ps.setString(6, method.name());
+                    ps.setString(7, e.getNote());
+                    ps.setString(8, TextNormalizer.normalize(e.getNote()));
+                    ps.setDate(9, Date.valueOf(e.getExpenseDate()));
+                    ps.setString(10, e.computeFingerprint());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return expenses.size();
+                }
+            },
+            keyHolder
+        );
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < expenses.size() && i < keys.size(); i++) {
+            Number id = (Number) keys.get(i).values().iterator().next();
+            expenses.get(i).setId(id.longValue());
+        }
+    }
+}
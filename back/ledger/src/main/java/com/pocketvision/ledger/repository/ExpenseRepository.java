@@ -36,20 +36,32 @@
 
 package com.pocketvision.ledger.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 import java.time.LocalDate;
+import java.time.YearMonth;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.pocketvision.ledger.dto.ExpenseSummary;
 import com.pocketvision.ledger.model.Expense;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
-public interface ExpenseRepository extends JpaRepository<Expense, Long> {
+public interface ExpenseRepository extends JpaRepository<Expense, Long>, JpaSpecificationExecutor<Expense> {
+    String EXPORT_FETCH_SIZE = "500";
+
     List<Expense> findByUserId(Long userId);
-    
+
     // Thêm method mới để query expense theo khoảng thời gian và category
     @Query("SELECT e FROM Expense e WHERE e.userId = :userId AND e.categoryId = :categoryId AND e.expenseDate BETWEEN :startDate AND :endDate")
     List<Expense> findByUserIdAndCategoryIdAndExpenseDateBetween(
@@ -59,24 +71,131 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
             @Param("endDate") LocalDate endDate
     );
 
+    // Tìm kiếm trong DB khi tắt chỉ mục trong bộ nhớ (xem ExpenseServiceImpl.searchInDatabase).
+    // keyword phải được chuẩn hóa bằng TextNormalizer (so khớp trên cột không dấu đã tính sẵn).
+
+    // Đếm qua idx_expense_user_date (chỉ đọc chỉ mục), dùng để chọn cách tìm
+    long countByUserId(Long userId);
+
+    // Theo chữ: chỉ mục FULLTEXT ngram ft_expense_search lọc ứng viên theo cụm (phrase, đã bỏ ký tự toán tử),
+    // rồi LIKE kiểm tra lại để giữ đúng ngữ nghĩa '%keyword%'. Chỉ dùng khi mọi từ trong keyword dài >= 2 ký tự (ngram_token_size).
+    // Chỉ mục là chung cho mọi user: MATCH lấy ứng viên của cả bảng rồi mới lọc user_id, nên chi phí tăng theo
+    // số dòng khớp toàn bảng (từ phổ biến như "ca phe" tốn nhiều nhất). Chỉ gọi cho user có nhiều expense
+    @Query(value = """
+        SELECT * FROM expenses e
+        WHERE MATCH(e.store_name_search, e.note_search) AGAINST (:phrase IN BOOLEAN MODE)
+          AND e.user_id = :userId
+          AND (e.store_name_search LIKE CONCAT('%', :keyword, '%') OR e.note_search LIKE CONCAT('%', :keyword, '%'))
+    """, nativeQuery = true)
+    List<Expense> searchTextByKeyword(@Param("userId") Long userId, @Param("keyword") String keyword, @Param("phrase") String phrase);
+
+    // Theo số tiền (chỉ khi keyword là số): so khớp trên dạng chữ bỏ số 0 thừa ("50000.00" -> "50000"),
+    // giống Money.toPlainString của chỉ mục trong bộ nhớ. Duyệt mọi expense của user (qua idx_expense_user_date)
+    @Query("""
+        SELECT e FROM Expense e
+        WHERE e.userId = :userId
+          AND TRIM(TRAILING '.' FROM TRIM(TRAILING '0' FROM CAST(e.totalAmount AS string))) LIKE CONCAT('%', :keyword, '%')
+    """)
+    List<Expense> searchByAmountText(@Param("userId") Long userId, @Param("keyword") String keyword);
+
+    // Duyệt mọi expense của user (qua idx_expense_user_date): cho user ít dữ liệu, hoặc từ khóa quá ngắn cho FULLTEXT
     @Query("""
         SELECT e FROM Expense e
         WHERE e.userId = :userId
           AND (
-              LOWER(e.storeName) LIKE LOWER(CONCAT('%', :keyword, '%'))
-              OR LOWER(e.note) LIKE LOWER(CONCAT('%', :keyword, '%'))
-              OR CAST(e.totalAmount AS string) LIKE CONCAT('%', :keyword, '%')
+              e.storeNameSearch LIKE CONCAT('%', :keyword, '%')
+              OR e.noteSearch LIKE CONCAT('%', :keyword, '%')
+              OR TRIM(TRAILING '.' FROM TRIM(TRAILING '0' FROM CAST(e.totalAmount AS string))) LIKE CONCAT('%', :keyword, '%')
           )
-        ORDER BY e.expenseDate DESC
     """)
     List<Expense> searchByKeyword(@Param("userId") Long userId, @Param("keyword") String keyword);
 
-    // Thêm method để lấy expense theo tháng và category
-    @Query("SELECT e FROM Expense e WHERE e.userId = :userId AND e.categoryId = :categoryId AND YEAR(e.expenseDate) = :year AND MONTH(e.expenseDate) = :month")
-    List<Expense> findByUserIdAndCategoryIdAndMonth(
+    // Phân trang keyset theo (expenseDate DESC, id DESC), dùng index (user_id, expense_date) + khóa chính
+    @Query("SELECT e FROM Expense e WHERE e.userId = :userId ORDER BY e.expenseDate DESC, e.id DESC")
+    List<Expense> findFirstPageByUserId(@Param("userId") Long userId, Limit limit);
+
+    @Query("""
+        SELECT e FROM Expense e
+        WHERE e.userId = :userId
+          AND (e.expenseDate < :afterDate OR (e.expenseDate = :afterDate AND e.id < :afterId))
+        ORDER BY e.expenseDate DESC, e.id DESC
+    """)
+    List<Expense> findPageByUserIdAfter(
+            @Param("userId") Long userId,
+            @Param("afterDate") LocalDate afterDate,
+            @Param("afterId") Long afterId,
+            Limit limit
+    );
+
+    // Bản rút gọn cho danh sách: chỉ đọc các cột cần hiển thị, cùng thứ tự và cursor với các query trên
+    @Query("""
+        SELECT new com.pocketvision.ledger.dto.ExpenseSummary(
+            e.id, e.expenseDate, e.totalAmount, e.storeName, e.categoryId, e.paymentMethod)
+        FROM Expense e
+        WHERE e.userId = :userId
+        ORDER BY e.expenseDate DESC, e.id DESC
+    """)
+    List<ExpenseSummary> findSummariesByUserId(@Param("userId") Long userId, Limit limit);
+
+    @Query("""
+        SELECT new com.pocketvision.ledger.dto.ExpenseSummary(
+            e.id, e.expenseDate, e.totalAmount, e.storeName, e.categoryId, e.paymentMethod)
+        FROM Expense e
+        WHERE e.userId = :userId
+          AND (e.expenseDate < :afterDate OR (e.expenseDate = :afterDate AND e.id < :afterId))
+        ORDER BY e.expenseDate DESC, e.id DESC
+    """)
+    List<ExpenseSummary> findSummaryPageByUserIdAfter(
+            @Param("userId") Long userId,
+            @Param("afterDate") LocalDate afterDate,
+            @Param("afterId") Long afterId,
+            Limit limit
+    );
+
+    // Dùng cho export: đọc theo cursor với fetch size giới hạn, không nạp cả tập kết quả vào heap.
+    // Với MySQL cần bật useCursorFetch=true trên JDBC URL để driver tôn trọng fetch size.
+    // Phải gọi trong transaction và đóng Stream sau khi dùng.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT e FROM Expense e WHERE e.userId = :userId AND e.expenseDate BETWEEN :startDate AND :endDate ORDER BY e.expenseDate, e.id")
+    Stream<Expense> streamByUserIdAndExpenseDateBetween(
+            @Param("userId") Long userId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate
+    );
+
+    // Thêm method để lấy expense theo tháng và category.
+    // So sánh khoảng ngày trực tiếp trên expense_date (dùng được index) thay vì YEAR()/MONTH()
+    @Query("SELECT e FROM Expense e WHERE e.userId = :userId AND e.categoryId = :categoryId AND e.expenseDate >= :startDate AND e.expenseDate < :endDateExclusive")
+    List<Expense> findByUserIdAndCategoryIdAndExpenseDateRange(
             @Param("userId") Long userId,
             @Param("categoryId") Long categoryId,
-            @Param("year") int year,
-            @Param("month") int month
+            @Param("startDate") LocalDate startDate,
+            @Param("endDateExclusive") LocalDate endDateExclusive
+    );
+
+    default List<Expense> findByUserIdAndCategoryIdAndMonth(Long userId, Long categoryId, YearMonth month) {
+        return findByUserIdAndCategoryIdAndExpenseDateRange(userId, categoryId, month.atDay(1), month.plusMonths(1).atDay(1));
+    }
+
+    // Tra trùng theo dấu vân tay (index user_id + fingerprint)
+    @Query("SELECT e.id FROM Expense e WHERE e.userId = :userId AND e.fingerprint = :fingerprint ORDER BY e.id")
+    List<Long> findIdsByFingerprint(@Param("userId") Long userId, @Param("fingerprint") String fingerprint, Limit limit);
+
+    @Query("""
+        SELECT e.fingerprint FROM Expense e
+        WHERE e.userId = :userId AND e.fingerprint IS NOT NULL
+        GROUP BY e.fingerprint
+        HAVING COUNT(e) > 1
+    """)
+    List<String> findDuplicateFingerprints(@Param("userId") Long userId);
+
+    @Query("SELECT e FROM Expense e WHERE e.userId = :userId AND e.fingerprint IN :fingerprints ORDER BY e.expenseDate DESC, e.id")
+    List<Expense> findByUserIdAndFingerprintIn(
+            @Param("userId") Long userId,
+            @Param("fingerprints") Collection<String> fingerprints
     );
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.pocketvision.ledger.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.pocketvision.ledger.dto.ExpenseFilter;
+import com.pocketvision.ledger.model.Category;
+import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.util.Money;
+
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+
+/**
+ * Dựng câu truy vấn lọc chi tiêu động: chỉ thêm điều kiện cho các trường có giá trị.
+ */
+public final class ExpenseSpecifications {
+
+    private ExpenseSpecifications() {
+    }
+
+    public static Specification<Expense> matching(ExpenseFilter filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            predicates.add(cb.equal(root.get("userId"), filter.getUserId()));
+
+            if (filter.getStartDate() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("expenseDate"), filter.getStartDate()));
+            }
+            if (filter.getEndDate() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("expenseDate"), filter.getEndDate()));
+            }
+            // totalAmount được map theo 1/100 đồng (MoneyConverter), nên so sánh với giá trị đã đổi sang minor unit
+            if (filter.getMinAmount() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("totalAmount"), Money.toMinor(filter.getMinAmount())));
+            }
+            if (filter.getMaxAmount() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("totalAmount"), Money.toMinor(filter.getMaxAmount())));
+            }
+            if (filter.getCategoryId() != null) {
+                predicates.add(cb.equal(root.get("categoryId"), filter.getCategoryId()));
+            }
+            if (filter.getPaymentMethod() != null) {
+                predicates.add(cb.equal(root.get("paymentMethod"), filter.getPaymentMethod()));
+            }
+
+            // Expense chỉ lưu categoryId nên lọc theo tên bằng semi-join sang bảng categories của cùng user
+            if (filter.getCategoryName() != null && !filter.getCategoryName().isBlank()) {
+                Subquery<Long> categoryIds = query.subquery(Long.class);
+                Root<Category> category = categoryIds.from(Category.class);
+                categoryIds.select(category.get("id")).where(
+                    cb.equal(category.get("userId"), filter.getUserId()),
+                    cb.like(cb.lower(category.get("name")), containsPattern(filter.getCategoryName()), '\\')
+                );
+                predicates.add(root.get("categoryId").in(categoryIds));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    private static String containsPattern(String keyword) {
+        String escaped = keyword.trim().toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
@@ -1,11 +1,24 @@
 package com.pocketvision.ledger.repository;
 
+import com.pocketvision.ledger.dto.InvoiceSummary;
 import com.pocketvision.ledger.model.Invoice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
 public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
     List<Invoice> findByUserIdOrderByCreatedAtDesc(Long userId);
+
+    // Danh sách rút gọn: không nạp items và các cột lớn (note, image_url)
+    @Query("""
+        SELECT new com.pocketvision.ledger.dto.InvoiceSummary(
+            i.id, i.invoiceDate, i.totalAmount, i.storeName, i.categoryId, i.paymentMethod)
+        FROM Invoice i
+        WHERE i.userId = :userId
+        ORDER BY i.createdAt DESC
+    """)
+    List<InvoiceSummary> findSummariesByUserId(@Param("userId") Long userId);
 }
\ No newline at end of file
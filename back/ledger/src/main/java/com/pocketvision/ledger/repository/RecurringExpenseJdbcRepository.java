@@ -0,0 +1,88 @@
+package com.pocketvision.ledger.repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.model.RecurringExpense;
+import com.pocketvision.ledger.util.Money;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Truy vấn cho job sinh chi tiêu định kỳ: nhận (khóa) một lô quy tắc đến hạn và dời next_run_date cả lô
+ * bằng JDBC batch. Phải gọi trong transaction; khóa được giữ tới khi transaction kết thúc.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RecurringExpenseJdbcRepository {
+
+    // SKIP LOCKED: nhiều instance chạy job cùng lúc sẽ nhận các lô khác nhau thay vì chờ nhau
+    private static final String LOCK_DUE_SQL = """
+        SELECT id, user_id, category_id, store_name, total_amount, payment_method, note,
+               interval_unit, interval_count, start_date, next_run_date, end_date
+        FROM recurring_expenses
+        WHERE active = TRUE AND next_run_date <= ? AND id > ?
+        ORDER BY id
+        LIMIT ?
+        FOR UPDATE SKIP LOCKED
+    """;
+
+    private static final String ADVANCE_SQL =
+        "UPDATE recurring_expenses SET next_run_date = ?, active = ?, last_error = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<RecurringExpense> lockDue(LocalDate today, long afterId, int limit) {
+        return jdbcTemplate.query(LOCK_DUE_SQL, (rs, rowNum) -> mapRow(rs), Date.valueOf(today), afterId, limit);
+    }
+
+    // Ghi lại nextRunDate/active/lastError của các quy tắc vừa xử lý trong một lô
+    public void advanceAll(List<RecurringExpense> rules) {
+        if (rules.isEmpty()) return;
+
+        jdbcTemplate.batchUpdate(ADVANCE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                RecurringExpense rule = rules.get(i);
+                ps.setDate(1, Date.valueOf(rule.getNextRunDate()));
+                ps.setBoolean(2, Boolean.TRUE.equals(rule.getActive()));
+                ps.setString(3, rule.getLastError());
+                ps.setLong(4, rule.getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rules.size();
+            }
+        });
+    }
+
+    private static RecurringExpense mapRow(ResultSet rs) throws SQLException {
+        RecurringExpense rule = new RecurringExpense();
+        rule.setId(rs.getLong("id"));
+        rule.setUserId(rs.getLong("user_id"));
+        rule.setCategoryId(rs.getLong("category_id"));
+        rule.setStoreName(rs.getString("store_name"));
+        rule.setTotalAmountMinor(Money.fromDecimal(rs.getBigDecimal("total_amount")));
+        String method = rs.getString("payment_method");
+        rule.setPaymentMethod(method != null ? Expense.PaymentMethod.valueOf(method) : Expense.PaymentMethod.OTHER);
+        rule.setNote(rs.getString("note"));
+        rule.setIntervalUnit(RecurringExpense.Interval.valueOf(rs.getString("interval_unit")));
+        rule.setIntervalCount(rs.getInt("interval_count"));
+        rule.setStartDate(rs.getDate("start_date").toLocalDate());
+        rule.setNextRunDate(rs.getDate("next_run_date").toLocalDate());
+        Date endDate = rs.getDate("end_date");
+        rule.setEndDate(endDate != null ? endDate.toLocalDate() : null);
+        rule.setActive(true);
+        return rule;
+    }
+}
@@ -0,0 +1,14 @@
+package com.pocketvision.ledger.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.pocketvision.ledger.model.RecurringExpense;
+
+@Repository
+public interface RecurringExpenseRepository extends JpaRepository<RecurringExpense, Long> {
+
+    List<RecurringExpense> findByUserIdOrderByNextRunDateAsc(Long userId);
+}
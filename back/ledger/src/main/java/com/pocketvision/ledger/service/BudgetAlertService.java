@@ -0,0 +1,85 @@
+package com.pocketvision.ledger.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.pocketvision.ledger.model.Budget;
+import com.pocketvision.ledger.model.Notification;
+import com.pocketvision.ledger.repository.BudgetRepository;
+
+/**
+ * Thông báo ngân sách theo ngưỡng: mỗi ngân sách lưu mức cảnh báo hiện tại (alert_level: NONE, WARNING >= 80%,
+ * EXCEEDED >= 100%). Chỉ tạo thông báo khi mức tăng lên; khi giảm xuống thì chỉ hạ mức để lần vượt ngưỡng sau
+ * lại được báo. Mức được đổi bằng UPDATE có điều kiện (compare-and-set), nên khi nhiều lần ghi chạy đồng thời
+ * chỉ một lần thắng và chỉ có một thông báo.
+ */
+@Service
+public class BudgetAlertService {
+
+    private static final int WARNING_PERCENT = 80;
+    private static final int EXCEEDED_PERCENT = 100;
+
+    @Autowired
+    private BudgetRepository budgetRepository;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    // budget phải mang spentAmount/limitAmount mới nhất và alertLevel đang lưu trong DB
+    @Transactional
+    public void evaluate(Budget budget) {
+        if (budget.getSpentAmountMinor() == null || budget.getLimitAmountMinor() == null) return;
+
+        evaluate(budget.getId(), budget.getUserId(), budget.getMonthYear(),
+                budget.getSpentAmountMinor(), budget.getLimitAmountMinor(), budget.getAlertLevel());
+    }
+
+    /**
+     * Đưa mức cảnh báo về đúng với spent/limit, thông báo nếu mức tăng.
+     * Trả về mức hiện tại sau khi xử lý, hoặc null nếu mức trong DB đã bị lần ghi khác đổi (caller nạp lại).
+     */
+    @Transactional
+    public Budget.AlertLevel evaluate(Long budgetId, Long userId, String monthYear,
+                                      long spentMinor, long limitMinor, Budget.AlertLevel currentLevel) {
+        Budget.AlertLevel current = currentLevel != null ? currentLevel : Budget.AlertLevel.NONE;
+        if (limitMinor <= 0) return current;
+
+        double percentage = spentMinor * 100.0 / limitMinor;
+        Budget.AlertLevel target = levelFor(percentage);
+        if (target == current) return current;
+
+        int changed = budgetRepository.compareAndSetAlertLevel(budgetId, current.name(), target.name());
+        if (changed == 0) return null;
+        if (target.ordinal() < current.ordinal()) return target;
+
+        try {
+            if (target == Budget.AlertLevel.EXCEEDED) {
+                notificationService.createNotification(
+                    userId,
+                    "Vỡ ngân sách!",
+                    String.format("CẢNH BÁO: Ngân sách tháng %s đã vượt quá %.0f%% hạn mức!", monthYear, percentage),
+                    Notification.NotificationType.BUDGET_WARNING,
+                    budgetId
+                );
+            } else {
+                notificationService.createNotification(
+                    userId,
+                    "Cảnh báo giới hạn",
+                    String.format("Cẩn thận! Bạn đã sử dụng %.0f%% ngân sách tháng %s.", percentage, monthYear),
+                    Notification.NotificationType.BUDGET_WARNING,
+                    budgetId
+                );
+            }
+        } catch (Exception e) {
+            System.err.println("Lỗi gửi thông báo ngân sách: " + e.getMessage());
+        }
+        return target;
+    }
+
+    private static Budget.AlertLevel levelFor(double percentage) {
+        if (percentage >= EXCEEDED_PERCENT) return Budget.AlertLevel.EXCEEDED;
+        if (percentage >= WARNING_PERCENT) return Budget.AlertLevel.WARNING;
+        return Budget.AlertLevel.NONE;
+    }
+}
@@ -0,0 +1,372 @@
+package com.pocketvision.ledger.service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.pocketvision.ledger.model.Budget;
+import com.pocketvision.ledger.repository.BudgetRepository;
+import com.pocketvision.ledger.util.MonthPeriod;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Sổ ngân sách trong bộ nhớ (tùy chọn, application.budget.ledger.enabled=true): (user, danh mục, tháng) -> spent,
+ * cộng dồn bằng LongAdder (phân mảnh theo thread, không tranh chấp khi nhiều expense ghi cùng lúc).
+ * Mỗi ô được nạp lần đầu từ bảng budgets khi cần. Khi bật, delta từ sự kiện expense chỉ cộng vào bộ nhớ,
+ * đọc ngân sách và kiểm tra ngưỡng lấy spent từ bộ nhớ, còn cột spent_amount được ghi bù theo lô mỗi
+ * flush-interval-ms (DB chậm hơn bộ nhớ tối đa một chu kỳ; tắt ứng dụng thì ghi nốt phần còn lại).
+ * Chỉ dùng khi chạy một instance: các instance khác không thấy phần chưa ghi xuống DB.
+ * Phép cộng trong bộ nhớ không rollback được nên apply() phải được gọi ngoài transaction và đúng một lần cho mỗi sự kiện.
+ * Khi spent_amount bị đặt lại tuyệt đối từ rollup (tạo/sửa ngân sách, đối soát), ô trong bộ nhớ được đặt lại tại chỗ
+ * ngay trước commit (beginReset/resetTo) thay vì bị xóa, để pending không bị mất cũng không bị ghi lặp.
+ */
+@Component
+public class BudgetLedger {
+
+    public record Key(Long userId, Long categoryId, YearMonth month) {}
+
+    private static final class Entry {
+        final Key key;
+        // null: không có ngân sách cho key này (vẫn giữ để không phải hỏi DB mỗi lần ghi)
+        final Long budgetId;
+        volatile long limitMinor;
+        final LongAdder spent = new LongAdder();
+        // Phần đã cộng vào bộ nhớ nhưng chưa ghi xuống spent_amount
+        final LongAdder pending = new LongAdder();
+        volatile Budget.AlertLevel alertLevel;
+        final long loadedAt = System.currentTimeMillis();
+        volatile long lastAccess = loadedAt;
+
+        Entry(Key key, Budget budget) {
+            this.key = key;
+            this.budgetId = budget != null ? budget.getId() : null;
+            this.limitMinor = budget != null && budget.getLimitAmountMinor() != null ? budget.getLimitAmountMinor() : 0L;
+            this.alertLevel = budget != null ? budget.getAlertLevel() : Budget.AlertLevel.NONE;
+            if (budget != null && budget.getSpentAmountMinor() != null) {
+                spent.add(budget.getSpentAmountMinor());
+            }
+        }
+    }
+
+    @Autowired
+    private BudgetRepository budgetRepository;
+
+    @Autowired
+    private BudgetAlertService budgetAlertService;
+
+    private final boolean enabled;
+    private final long idleMillis;
+    private final long missingTtlMillis;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    // Ô vừa bị loại khỏi map: ghi nốt pending ở lần flush sau, phòng khi có lần cộng chạy song song với lúc loại
+    private final Queue<Entry> retired = new ConcurrentLinkedQueue<>();
+
+    // flush giữ lock này trong suốt lần ghi; transaction đặt lại spent giữ nó từ beginReset tới khi kết thúc
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public BudgetLedger(
+            PlatformTransactionManager transactionManager,
+            @Value("${application.budget.ledger.enabled:false}") boolean enabled,
+            @Value("${application.budget.ledger.idle-ms:600000}") long idleMillis,
+            @Value("${application.budget.ledger.missing-ttl-ms:30000}") long missingTtlMillis) {
+        // Luôn mở transaction mới: kiểm tra ngưỡng/thông báo lỗi không được kéo theo transaction của caller
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.idleMillis = idleMillis;
+        this.missingTtlMillis = missingTtlMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Cộng các delta (1/100 đồng) rồi kiểm tra ngưỡng cảnh báo của từng ngân sách, mỗi ngân sách một transaction riêng.
+     * Nạp đủ mọi ô trước khi cộng: nếu nạp lỗi thì chưa có gì được cộng và caller có thể thử lại an toàn;
+     * sau khi đã cộng thì không ném lỗi nữa.
+     */
+    public void apply(Map<Key, Long> deltas) {
+        List<Entry> touched = new ArrayList<>(deltas.size());
+        for (Key key : deltas.keySet()) {
+            touched.add(entryFor(key));
+        }
+
+        int i = 0;
+        for (Long delta : deltas.values()) {
+            Entry entry = touched.get(i++);
+            entry.lastAccess = System.currentTimeMillis();
+            if (entry.budgetId == null) continue;
+            entry.spent.add(delta);
+            entry.pending.add(delta);
+        }
+
+        for (Entry entry : touched) {
+            if (entry.budgetId == null) continue;
+            try {
+                checkThreshold(entry);
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Budget ledger: lỗi kiểm tra ngưỡng ngân sách " + entry.budgetId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // spent hiện tại của một ngân sách vừa đọc từ DB; nếu chưa có ô thì nạp luôn từ chính budget này
+    public long spentOf(Budget budget) {
+        if (!enabled) return budget.getSpentAmountMinor();
+
+        Key key = new Key(budget.getUserId(), budget.getCategoryId(), budget.getPeriod());
+        // Ô "chưa có ngân sách" nạp trước khi ngân sách được tạo thì thay luôn bằng ngân sách vừa đọc
+        Entry entry = entries.compute(key, (k, e) -> e == null || e.budgetId == null ? new Entry(k, budget) : e);
+        entry.lastAccess = System.currentTimeMillis();
+        return entry.budgetId != null ? entry.spent.sum() : budget.getSpentAmountMinor();
+    }
+
+    /**
+     * Bắt đầu đặt lại spent của một user trong transaction hiện tại: chặn flush tới khi transaction kết thúc.
+     * Caller phải đã khóa user và chờ hết delta đang xử lý (xem BudgetServiceImpl), và gọi TRƯỚC khi ghi bảng budgets:
+     * flush cũng UPDATE budgets khi đang giữ lock nên gọi muộn hơn có thể deadlock giữa khóa dòng và flushLock.
+     */
+    public void beginReset() {
+        if (!enabled || !TransactionSynchronizationManager.isSynchronizationActive()) return;
+        if (flushLock.isHeldByCurrentThread()) return;
+
+        flushLock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                flushLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Đặt các ô về spent_amount (tuyệt đối) của các budget vừa ghi, ngay trước commit. Lúc đó user còn bị khóa, không còn
+     * delta đang xử lý và flush bị chặn, nên mọi pending trong ô đã nằm trong giá trị mới và được bỏ; delta của expense
+     * commit sau transaction này cộng tiếp lên ô như bình thường. Rollback thì hoàn lại đúng phần đã đổi.
+     */
+    public void resetTo(Collection<Budget> budgets) {
+        if (!enabled || budgets.isEmpty()) return;
+        List<Budget> snapshot = List.copyOf(budgets);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            flushLock.lock();
+            try {
+                snapshot.forEach(this::reset);
+            } finally {
+                flushLock.unlock();
+            }
+            return;
+        }
+
+        List<Runnable> undo = new ArrayList<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                for (Budget budget : snapshot) {
+                    undo.add(reset(budget));
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) undo.forEach(Runnable::run);
+            }
+        });
+    }
+
+    // Gọi khi ngân sách bị xóa: pending của ngân sách đã xóa không còn dòng nào để ghi
+    public void invalidate(Long userId, Long categoryId, YearMonth month) {
+        if (!enabled) return;
+        Key key = new Key(userId, categoryId, month);
+        afterCommit(() -> entries.remove(key));
+    }
+
+    // Gọi sau khi tạo hàng loạt ngân sách cho một tháng: bỏ các ô "chưa có ngân sách" để lần ghi sau nạp lại
+    public void invalidateMissing(YearMonth month) {
+        if (!enabled) return;
+        afterCommit(() -> entries.values().removeIf(entry -> entry.budgetId == null && entry.key.month().equals(month)));
+    }
+
+    // ==========================================
+    // GHI XUỐNG DB
+    // ==========================================
+
+    @Scheduled(fixedDelayString = "${application.budget.ledger.flush-interval-ms:5000}")
+    public void flush() {
+        if (!enabled) return;
+
+        // Loại ô cũng trong lock: resetTo không được chạy giữa lúc ô bị bỏ khỏi map và lúc nó vào hàng retired
+        flushLock.lock();
+        try {
+            flushDirty();
+            evictIdle();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushDirty() {
+        List<Entry> dirty = new ArrayList<>();
+        List<Entry> retiredDirty = new ArrayList<>();
+        for (Entry entry; (entry = retired.poll()) != null; ) {
+            if (entry.pending.sum() != 0) retiredDirty.add(entry);
+        }
+        dirty.addAll(retiredDirty);
+        for (Entry entry : entries.values()) {
+            if (entry.budgetId != null && entry.pending.sum() != 0) dirty.add(entry);
+        }
+
+        if (!dirty.isEmpty()) {
+            long[] flushed = new long[dirty.size()];
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (int i = 0; i < dirty.size(); i++) {
+                        Entry entry = dirty.get(i);
+                        flushed[i] = entry.pending.sum();
+                        budgetRepository.addToSpentAmount(entry.key.userId(), entry.key.categoryId(),
+                                MonthPeriod.toInt(entry.key.month()), flushed[i]);
+                    }
+                });
+                // Trừ đúng phần đã ghi (không reset) để giữ các lần cộng xảy ra trong lúc flush
+                for (int i = 0; i < dirty.size(); i++) {
+                    dirty.get(i).pending.add(-flushed[i]);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Budget ledger: ghi spent_amount thất bại, sẽ thử lại lần sau: " + e.getMessage());
+                retired.addAll(retiredDirty);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // ==========================================
+    // HỖ TRỢ
+    // ==========================================
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // Đặt ô của budget về giá trị trong DB; trả về thao tác hoàn lại. Gọi khi giữ flushLock
+    private Runnable reset(Budget budget) {
+        Key key = new Key(budget.getUserId(), budget.getCategoryId(), budget.getPeriod());
+        Runnable undoRetired = dropRetiredPending(key);
+        Entry entry = entries.get(key);
+
+        if (entry == null || entry.budgetId == null) {
+            Entry fresh = new Entry(key, budget);
+            if (entry == null) {
+                entries.put(key, fresh);
+            } else {
+                entries.replace(key, entry, fresh);
+            }
+            return () -> {
+                if (entries.remove(key, fresh) && entry != null) entries.putIfAbsent(key, entry);
+                undoRetired.run();
+            };
+        }
+
+        long spentChange = budget.getSpentAmountMinor() - entry.spent.sum();
+        long droppedPending = entry.pending.sum();
+        long oldLimit = entry.limitMinor;
+        Budget.AlertLevel oldLevel = entry.alertLevel;
+
+        entry.spent.add(spentChange);
+        entry.pending.add(-droppedPending);
+        entry.limitMinor = budget.getLimitAmountMinor() != null ? budget.getLimitAmountMinor() : 0L;
+        entry.alertLevel = budget.getAlertLevel();
+        return () -> {
+            entry.spent.add(-spentChange);
+            entry.pending.add(droppedPending);
+            entry.limitMinor = oldLimit;
+            entry.alertLevel = oldLevel;
+            undoRetired.run();
+        };
+    }
+
+    // Ô cùng key đã bị loại nhưng còn chờ flush: pending của nó cũng đã nằm trong giá trị mới
+    private Runnable dropRetiredPending(Key key) {
+        List<Entry> dropped = new ArrayList<>();
+        List<Long> amounts = new ArrayList<>();
+        for (Entry old : retired) {
+            if (!old.key.equals(key)) continue;
+            long amount = old.pending.sum();
+            old.pending.add(-amount);
+            dropped.add(old);
+            amounts.add(amount);
+        }
+        return () -> {
+            for (int i = 0; i < dropped.size(); i++) {
+                dropped.get(i).pending.add(amounts.get(i));
+            }
+        };
+    }
+
+    // Ô "chưa có ngân sách" chỉ được tin trong missing-ttl-ms rồi nạp lại, phòng khi bị nạp đúng lúc ngân sách đang được tạo
+    private Entry entryFor(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.budgetId != null || System.currentTimeMillis() - entry.loadedAt < missingTtlMillis) return entry;
+            entries.remove(key, entry);
+        }
+
+        Budget budget = budgetRepository
+                .findByUserIdAndCategoryIdAndPeriod(key.userId(), key.categoryId(), key.month())
+                .orElse(null);
+        return entries.computeIfAbsent(key, k -> new Entry(k, budget));
+    }
+
+    // Chỉ cập nhật alertLevel trong bộ nhớ sau khi transaction đổi mức đã commit
+    private void checkThreshold(Entry entry) {
+        Budget.AlertLevel level = transactionTemplate.execute(status -> budgetAlertService.evaluate(entry.budgetId,
+                entry.key.userId(), entry.key.month().toString(), entry.spent.sum(), entry.limitMinor, entry.alertLevel));
+        if (level == null) {
+            // Mức trong DB đã bị đổi ở nơi khác: nạp lại
+            level = budgetRepository.findById(entry.budgetId).map(Budget::getAlertLevel).orElse(entry.alertLevel);
+        }
+        entry.alertLevel = level;
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        for (Entry entry : entries.values()) {
+            if (entry.lastAccess < cutoff && entry.pending.sum() == 0 && entries.remove(entry.key, entry)) {
+                retired.add(entry);
+            }
+        }
+    }
+}
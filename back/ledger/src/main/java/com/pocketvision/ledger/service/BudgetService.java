@@ -2,14 +2,16 @@ package com.pocketvision.ledger.service;
 
 import com.pocketvision.ledger.model.Budget;
 
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Optional;
 
 public interface BudgetService {
     List<Budget> getAllBudgets(Long userId);
-    List<Budget> getBudgetsByMonth(Long userId, String monthYear); 
+    List<Budget> getBudgetsByMonth(Long userId, YearMonth month);
     Optional<Budget> getBudget(Long id);
     Budget createBudget(Budget budget);
     Budget updateBudget(Long id, Budget updatedBudget);
     void deleteBudget(Long id);
+    int reconcileSpentAmounts(Long userId);
 }
\ No newline at end of file
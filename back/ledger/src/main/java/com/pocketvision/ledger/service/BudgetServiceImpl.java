@@ -1,18 +1,23 @@
 package com.pocketvision.ledger.service;
 
+import com.pocketvision.ledger.event.ExpenseEventListener;
 import com.pocketvision.ledger.model.Budget;
-import com.pocketvision.ledger.model.Expense;
-import com.pocketvision.ledger.model.Notification;
 import com.pocketvision.ledger.repository.BudgetRepository;
-import com.pocketvision.ledger.repository.ExpenseRepository;
+import com.pocketvision.ledger.repository.DailySpendRollupRepository;
+import com.pocketvision.ledger.util.MonthPeriod;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -22,33 +27,60 @@ public class BudgetServiceImpl implements BudgetService {
     private BudgetRepository budgetRepository;
 
     @Autowired
-    private ExpenseRepository expenseRepository;
+    private DailySpendRollupRepository rollupRepository;
 
     @Autowired
-    private NotificationService notificationService;
+    private BudgetAlertService budgetAlertService;
+
+    @Autowired
+    private BudgetLedger budgetLedger;
+
+    @Autowired
+    private ReportCache reportCache;
+
+    @Autowired
+    private DailySpendRollupService rollupService;
+
+    @Autowired
+    private ExpenseEventListener expenseEventListener;
+
+    private final TransactionTemplate transactionTemplate;
+    private final int reconcileBatchSize;
+    private final long drainTimeoutMillis;
+
+    public BudgetServiceImpl(
+            PlatformTransactionManager transactionManager,
+            @Value("${application.budget.reconcile.batch-size:500}") int reconcileBatchSize,
+            @Value("${application.budget.reconcile.drain-timeout-ms:5000}") long drainTimeoutMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reconcileBatchSize = Math.max(1, reconcileBatchSize);
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
 
     // ========================================================================
     // CÁC PHƯƠNG THỨC LẤY DỮ LIỆU (READ)
+    // Chỉ đọc: spentAmount trả về được tính từ rollup (hoặc lấy từ BudgetLedger nếu bật), không ghi lại vào DB
+    // (cột spent_amount do sự kiện expense và job đối soát cập nhật)
     // ========================================================================
 
     @Override
+    @Transactional(readOnly = true)
     public List<Budget> getAllBudgets(Long userId) {
-        List<Budget> budgets = budgetRepository.findByUserId(userId);
-        budgets.forEach(this::updateSpentAmount);
-        return budgets;
+        return withActualSpent(userId, null, budgetRepository.findByUserId(userId));
     }
 
     @Override
-    public List<Budget> getBudgetsByMonth(Long userId, String monthYear) {
-        List<Budget> budgets = budgetRepository.findByUserIdAndMonthYear(userId, monthYear);
-        budgets.forEach(this::updateSpentAmount);
-        return budgets;
+    @Transactional(readOnly = true)
+    public List<Budget> getBudgetsByMonth(Long userId, YearMonth month) {
+        return withActualSpent(userId, month, budgetRepository.findByUserIdAndPeriod(userId, month));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Budget> getBudget(Long id) {
         Optional<Budget> budget = budgetRepository.findById(id);
-        budget.ifPresent(this::updateSpentAmount);
+        budget.ifPresent(b -> b.setSpentAmountMinor(
+                budgetLedger.isEnabled() ? budgetLedger.spentOf(b) : calculateTotalSpentForBudget(b)));
         return budget;
     }
 
@@ -62,23 +94,25 @@ public class BudgetServiceImpl implements BudgetService {
         if (budget.getLimitAmount() == null || budget.getLimitAmount() <= 0) {
             throw new IllegalArgumentException("Hạn mức ngân sách phải lớn hơn 0");
         }
-        if (budget.getMonthYear() == null || !budget.getMonthYear().matches("^\\d{4}-\\d{2}$")) {
+        if (budget.getPeriod() == null) {
             throw new IllegalArgumentException("Định dạng tháng không hợp lệ (yyyy-MM)");
         }
 
-        Optional<Budget> existing = budgetRepository.findByUserIdAndCategoryIdAndMonthYear(
-                budget.getUserId(), budget.getCategoryId(), budget.getMonthYear()
+        Optional<Budget> existing = budgetRepository.findByUserIdAndCategoryIdAndPeriod(
+                budget.getUserId(), budget.getCategoryId(), budget.getPeriod()
         );
         if (existing.isPresent()) {
             throw new IllegalArgumentException("Ngân sách cho danh mục này trong tháng " + budget.getMonthYear() + " đã tồn tại.");
         }
 
-        Double currentSpent = calculateTotalSpentForBudget(budget);
-        budget.setSpentAmount(currentSpent);
+        beginSpentReset(budget.getUserId());
+        budget.setSpentAmountMinor(calculateTotalSpentForBudget(budget));
 
         Budget savedBudget = budgetRepository.save(budget);
+        reportCache.invalidateUser(savedBudget.getUserId());
+        budgetLedger.resetTo(List.of(savedBudget));
 
-        checkAndNotify(savedBudget);
+        budgetAlertService.evaluate(savedBudget);
 
         return savedBudget;
     }
@@ -93,86 +127,137 @@ public class BudgetServiceImpl implements BudgetService {
             throw new IllegalArgumentException("Hạn mức mới không hợp lệ");
         }
 
+        beginSpentReset(existing.getUserId());
         existing.setLimitAmount(updatedBudget.getLimitAmount());
         
-        Double currentSpent = calculateTotalSpentForBudget(existing);
-        existing.setSpentAmount(currentSpent);
+        existing.setSpentAmountMinor(calculateTotalSpentForBudget(existing));
 
         Budget saved = budgetRepository.save(existing);
+        reportCache.invalidateUser(saved.getUserId());
+        budgetLedger.resetTo(List.of(saved));
 
-        checkAndNotify(saved);
+        budgetAlertService.evaluate(saved);
         
         return saved;
     }
 
     @Override
     public void deleteBudget(Long id) {
-        if (!budgetRepository.existsById(id)) {
-            throw new IllegalArgumentException("Ngân sách không tồn tại");
+        Budget budget = budgetRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Ngân sách không tồn tại"));
+        budgetRepository.delete(budget);
+        reportCache.invalidateUser(budget.getUserId());
+        budgetLedger.invalidate(budget.getUserId(), budget.getCategoryId(), budget.getPeriod());
+    }
+
+    // spent_amount được cập nhật theo delta sau khi expense commit (ExpenseEventListener); hàm này sửa các sai lệch của một user.
+    // Trả về 0 nếu user vẫn còn sự kiện chưa xử lý xong (bỏ qua, lần đối soát sau sẽ làm lại)
+    @Override
+    public int reconcileSpentAmounts(Long userId) {
+        Integer corrected = reconcileUser(userId);
+        return corrected != null ? corrected : 0;
+    }
+
+    // Duyệt user theo lô, mỗi user một transaction ngắn thay vì một câu UPDATE ... JOIN cho cả bảng
+    @Scheduled(cron = "${application.budget.reconcile-cron:0 30 3 * * *}")
+    public void reconcileAllSpentAmounts() {
+        long afterId = 0;
+        int corrected = 0;
+        int skipped = 0;
+
+        while (true) {
+            List<Long> userIds = budgetRepository.findUserIdsAfter(afterId, reconcileBatchSize);
+            if (userIds.isEmpty()) break;
+
+            for (Long userId : userIds) {
+                try {
+                    Integer result = reconcileUser(userId);
+                    if (result == null) {
+                        skipped++;
+                    } else {
+                        corrected += result;
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("❌ Reconcile spent_amount thất bại cho user " + userId + ": " + e.getMessage());
+                }
+            }
+            afterId = userIds.get(userIds.size() - 1);
+        }
+
+        if (corrected > 0 || skipped > 0) {
+            System.out.println("🔧 Reconciled spent_amount for " + corrected + " budgets, skipped " + skipped + " busy users");
         }
-        budgetRepository.deleteById(id);
     }
 
     // ========================================================================
     // CÁC HÀM HỖ TRỢ (PRIVATE HELPERS)
     // ========================================================================
 
-    private void updateSpentAmount(Budget budget) {
-        Double totalSpent = calculateTotalSpentForBudget(budget);
-        
-        if (Double.compare(totalSpent, budget.getSpentAmount()) != 0) {
-            budget.setSpentAmount(totalSpent);
-            budgetRepository.save(budget);
+    // Khóa user rồi chờ hết delta đang xử lý trước khi đọc rollup: mọi expense đã commit khi đó đều đã nằm trong
+    // spent_amount, còn expense mới phải chờ khóa nên delta của chúng đến sau và cộng lên giá trị đã đối soát.
+    // null = hết thời gian chờ mà user vẫn còn sự kiện (đang thử lại), không đối soát lần này
+    private Integer reconcileUser(Long userId) {
+        Integer corrected = transactionTemplate.execute(status -> {
+            rollupService.lockUser(userId);
+            if (!expenseEventListener.awaitIdle(userId, drainTimeoutMillis)) {
+                return null;
+            }
+            budgetLedger.beginReset();
+            int updated = budgetRepository.reconcileSpentAmounts(userId);
+            if (budgetLedger.isEnabled()) {
+                budgetLedger.resetTo(budgetRepository.findByUserId(userId));
+            }
+            return updated;
+        });
+        if (corrected != null && corrected > 0) {
+            reportCache.invalidateUser(userId);
+        }
+        return corrected;
+    }
+
+    // Tạo/sửa ngân sách ghi spent_amount tuyệt đối từ rollup nên cần cùng điều kiện như đối soát: khóa user, chờ hết
+    // delta đang xử lý, chặn flush của BudgetLedger (trước khi ghi bảng budgets) rồi đặt lại ô trong bộ nhớ trước commit
+    private void beginSpentReset(Long userId) {
+        rollupService.lockUser(userId);
+        if (!expenseEventListener.awaitIdle(userId, drainTimeoutMillis)) {
+            throw new IllegalStateException("Chi tiêu của bạn đang được cập nhật, vui lòng thử lại sau");
         }
+        budgetLedger.beginReset();
     }
 
-    private Double calculateTotalSpentForBudget(Budget budget) {
+    // Một câu truy vấn tổng hợp cho cả danh sách thay vì một câu cho mỗi ngân sách.
+    // Entity nạp trong transaction readOnly không được flush nên gán spentAmount không sinh UPDATE
+    private List<Budget> withActualSpent(Long userId, YearMonth month, List<Budget> budgets) {
+        if (budgets.isEmpty()) return budgets;
+
+        if (budgetLedger.isEnabled()) {
+            budgets.forEach(budget -> budget.setSpentAmountMinor(budgetLedger.spentOf(budget)));
+            return budgets;
+        }
+
+        Map<Long, Long> spentByBudget = new HashMap<>();
+        for (BudgetRepository.SpentTotal total : budgetRepository.sumSpentByBudget(userId, month != null ? MonthPeriod.toInt(month) : null)) {
+            spentByBudget.put(total.getBudgetId(), total.getSpentMinor());
+        }
+        for (Budget budget : budgets) {
+            budget.setSpentAmountMinor(spentByBudget.getOrDefault(budget.getId(), 0L));
+        }
+        return budgets;
+    }
+
+    // Đơn vị 1/100 đồng (xem Money)
+    private long calculateTotalSpentForBudget(Budget budget) {
         try {
-            YearMonth yearMonth = YearMonth.parse(budget.getMonthYear(), DateTimeFormatter.ofPattern("yyyy-MM"));
+            YearMonth yearMonth = budget.getPeriod();
             LocalDate startDate = yearMonth.atDay(1);
             LocalDate endDate = yearMonth.atEndOfMonth();
 
-            List<Expense> expenses = expenseRepository.findByUserIdAndCategoryIdAndExpenseDateBetween(
+            return rollupRepository.sumTotalAmountMinorForCategory(
                 budget.getUserId(), budget.getCategoryId(), startDate, endDate
             );
-
-            return expenses.stream()
-                    .mapToDouble(Expense::getTotalAmount)
-                    .sum();
         } catch (Exception e) {
             System.err.println("Lỗi tính toán ngân sách (ID: " + budget.getId() + "): " + e.getMessage());
-            return 0.0;
-        }
-    }
-
-    private void checkAndNotify(Budget budget) {
-        if (budget.getLimitAmount() <= 0) return;
-
-        double percentage = (budget.getSpentAmount() / budget.getLimitAmount()) * 100;
-
-        try {
-            if (percentage >= 100) {
-                // Đã thêm tham số Title (tham số thứ 2)
-                notificationService.createNotification(
-                    budget.getUserId(),
-                    "Vỡ ngân sách!", // Title
-                    String.format("CẢNH BÁO: Ngân sách tháng %s đã vượt quá %.0f%% hạn mức!", budget.getMonthYear(), percentage),
-                    Notification.NotificationType.BUDGET_WARNING,
-                    budget.getId()
-                );
-            } 
-            else if (percentage >= 80) {
-                // Đã thêm tham số Title (tham số thứ 2)
-                notificationService.createNotification(
-                    budget.getUserId(),
-                    "Cảnh báo giới hạn", // Title
-                    String.format("Cẩn thận! Bạn đã sử dụng %.0f%% ngân sách tháng %s.", percentage, budget.getMonthYear()),
-                    Notification.NotificationType.BUDGET_WARNING,
-                    budget.getId()
-                );
-            }
-        } catch (Exception e) {
-            System.err.println("Lỗi gửi thông báo ngân sách: " + e.getMessage());
+            return 0L;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package com.pocketvision.ledger.service;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.pocketvision.ledger.model.BudgetTemplate;
+import com.pocketvision.ledger.repository.BudgetTemplateJdbcRepository;
+import com.pocketvision.ledger.repository.BudgetTemplateRepository;
+
+/**
+ * Quản lý mẫu ngân sách hằng tháng và job tạo ngân sách khi sang tháng mới.
+ * Job xử lý mẫu của mọi user theo lô: mỗi lô là một câu INSERT ... SELECT ... ON DUPLICATE KEY UPDATE trong transaction riêng.
+ * Ngân sách đã tồn tại (user tự tạo, hoặc lần chạy trước đã tạo) được bỏ qua nhờ uniq_budget nên job
+ * chạy lại bao nhiêu lần cũng được, kể cả sau khi tắt giữa chừng.
+ */
+@Service
+public class BudgetTemplateService {
+
+    @Autowired
+    private BudgetTemplateRepository templateRepository;
+
+    @Autowired
+    private BudgetTemplateJdbcRepository templateJdbcRepository;
+
+    @Autowired
+    private BudgetLedger budgetLedger;
+
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public BudgetTemplateService(
+            PlatformTransactionManager transactionManager,
+            @Value("${application.budget.rollover.batch-size:1000}") int batchSize) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // ==========================================
+    // CRUD
+    // ==========================================
+
+    public List<BudgetTemplate> getByUser(Long userId) {
+        return templateRepository.findByUserIdOrderByCategoryIdAsc(userId);
+    }
+
+    @Transactional
+    public BudgetTemplate create(BudgetTemplate template) {
+        validate(template);
+        if (templateRepository.findByUserIdAndCategoryId(template.getUserId(), template.getCategoryId()).isPresent()) {
+            throw new IllegalArgumentException("Danh mục này đã có mẫu ngân sách");
+        }
+        template.setId(null);
+        if (template.getActive() == null) {
+            template.setActive(true);
+        }
+        return templateRepository.save(template);
+    }
+
+    // Chỉ áp dụng từ lần tạo ngân sách tháng sau; ngân sách đã tạo giữ nguyên
+    @Transactional
+    public BudgetTemplate update(Long id, BudgetTemplate updated) {
+        BudgetTemplate existing = templateRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy mẫu ngân sách"));
+
+        if (updated.getLimitAmountMinor() == null || updated.getLimitAmountMinor() <= 0) {
+            throw new IllegalArgumentException("Hạn mức ngân sách phải lớn hơn 0");
+        }
+
+        existing.setLimitAmountMinor(updated.getLimitAmountMinor());
+        if (updated.getActive() != null) {
+            existing.setActive(updated.getActive());
+        }
+        return templateRepository.save(existing);
+    }
+
+    @Transactional
+    public void delete(Long id) {
+        if (!templateRepository.existsById(id)) {
+            throw new IllegalArgumentException("Không tìm thấy mẫu ngân sách");
+        }
+        templateRepository.deleteById(id);
+    }
+
+    // ==========================================
+    // JOB TẠO NGÂN SÁCH THÁNG MỚI
+    // ==========================================
+
+    // Mặc định 00:05 ba ngày đầu tháng: lần chạy ngày 2, 3 chỉ bù các lô lỗi hoặc bị lỡ do server tắt
+    @Scheduled(cron = "${application.budget.rollover.cron:0 5 0 1-3 * *}")
+    public void rolloverCurrentMonth() {
+        rollover(YearMonth.now());
+    }
+
+    /**
+     * Tạo ngân sách tháng month cho mọi mẫu đang bật. Trả về số ngân sách đã tạo.
+     */
+    public int rollover(YearMonth month) {
+        long start = System.currentTimeMillis();
+        long afterId = 0;
+        int templates = 0;
+        int created = 0;
+
+        while (true) {
+            List<Long> ids = templateJdbcRepository.nextChunk(afterId, batchSize);
+            if (ids.isEmpty()) break;
+
+            long fromId = afterId;
+            long toId = ids.get(ids.size() - 1);
+            try {
+                Integer inserted = transactionTemplate.execute(
+                        status -> templateJdbcRepository.insertBudgets(month, fromId, toId));
+                if (inserted != null && inserted > 0) {
+                    created += inserted;
+                    // Sau khi lô đã commit: bỏ các ô "chưa có ngân sách" của tháng này trong BudgetLedger
+                    budgetLedger.invalidateMissing(month);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("❌ Budget rollover " + month + ": lô mẫu (" + fromId + ", " + toId
+                        + "] thất bại: " + e.getMessage());
+            }
+            templates += ids.size();
+            afterId = toId;
+        }
+
+        if (templates > 0) {
+            System.out.println("📅 Budget rollover " + month + ": " + templates + " mẫu, tạo " + created
+                    + " ngân sách trong " + (System.currentTimeMillis() - start) + " ms");
+        }
+        return created;
+    }
+
+    private void validate(BudgetTemplate template) {
+        if (template.getUserId() == null) {
+            throw new IllegalArgumentException("Thiếu thông tin người dùng");
+        }
+        if (template.getCategoryId() == null) {
+            throw new IllegalArgumentException("Vui lòng chọn danh mục");
+        }
+        if (template.getLimitAmountMinor() == null || template.getLimitAmountMinor() <= 0) {
+            throw new IllegalArgumentException("Hạn mức ngân sách phải lớn hơn 0");
+        }
+    }
+}
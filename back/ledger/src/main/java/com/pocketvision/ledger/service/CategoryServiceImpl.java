@@ -14,6 +14,9 @@ public class CategoryServiceImpl implements CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private ReportCache reportCache;
+
     @Override
     public List<Category> getCategoriesByUser(Long userId) {
         return categoryRepository.findByUserId(userId);
@@ -21,7 +24,9 @@ public class CategoryServiceImpl implements CategoryService {
 
     @Override
     public Category createCategory(Category category) {
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        reportCache.invalidateUser(saved.getUserId());
+        return saved;
     }
 
     @Override
@@ -31,14 +36,19 @@ public class CategoryServiceImpl implements CategoryService {
                     existing.setName(updated.getName());
                     if (updated.getColorHex() != null) existing.setColorHex(updated.getColorHex());
                     if (updated.getIcon() != null) existing.setIcon(updated.getIcon());
-                    
-                    return categoryRepository.save(existing);
+
+                    Category saved = categoryRepository.save(existing);
+                    reportCache.invalidateUser(saved.getUserId());
+                    return saved;
                 })
                 .orElse(null);
     }
     
     @Override
     public void deleteCategory(Long id) {
-        categoryRepository.deleteById(id);
+        categoryRepository.findById(id).ifPresent(category -> {
+            categoryRepository.delete(category);
+            reportCache.invalidateUser(category.getUserId());
+        });
     }
 }
\ No newline at end of file
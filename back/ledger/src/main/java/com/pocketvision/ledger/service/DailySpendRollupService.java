@@ -0,0 +1,94 @@
+package com.pocketvision.ledger.service;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.pocketvision.ledger.model.DailySpendRollup;
+import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.repository.DailySpendRollupRepository;
+
+/**
+ * Giữ daily_spend_rollup khớp với bảng expenses: mỗi lần ghi tính lại các ô bị ảnh hưởng bằng DELETE + INSERT ... SELECT.
+ * Dưới REPEATABLE READ, phần SELECT khóa S các dòng expense đọc được, nên hai transaction cùng ghi một (user, ngày)
+ * có thể deadlock (mỗi bên giữ X dòng expense vừa ghi và chờ dòng của bên kia). Vì vậy mọi transaction ghi expense
+ * phải gọi lockUser/lockUsers TRƯỚC khi ghi expense: các lần ghi của cùng một user chạy tuần tự theo một thứ tự khóa cố định.
+ */
+@Service
+public class DailySpendRollupService {
+
+    @Autowired
+    private DailySpendRollupRepository rollupRepository;
+
+    // Khóa dòng users (SELECT ... FOR UPDATE) tới hết transaction hiện tại
+    @Transactional
+    public void lockUser(Long userId) {
+        if (userId == null) return;
+        rollupRepository.lockUsers(List.of(userId));
+    }
+
+    // Nhiều user (ghi theo lô): khóa theo id tăng dần để hai lô chồng nhau không khóa chéo
+    @Transactional
+    public void lockUsers(Collection<Long> userIds) {
+        List<Long> ids = userIds.stream().filter(Objects::nonNull).distinct().sorted().toList();
+        if (ids.isEmpty()) return;
+        rollupRepository.lockUsers(ids);
+    }
+
+    // Tính lại ô rollup chứa expense này (gọi sau khi insert/update/delete expense)
+    @Transactional
+    public void refreshFor(Expense expense) {
+        refreshCell(expense.getUserId(), expense.getExpenseDate(), expense.getCategoryId(), expense.getPaymentMethod());
+    }
+
+    @Transactional
+    public void refreshCell(Long userId, LocalDate day, Long categoryId, Expense.PaymentMethod paymentMethod) {
+        if (userId == null || day == null) return;
+
+        long cellCategoryId = categoryId != null ? categoryId : DailySpendRollup.NO_CATEGORY;
+        String cellMethod = (paymentMethod != null ? paymentMethod : Expense.PaymentMethod.OTHER).name();
+
+        rollupRepository.deleteCell(userId, day, cellCategoryId, cellMethod);
+        rollupRepository.insertCellFromExpenses(userId, day, cellCategoryId, cellMethod);
+    }
+
+    // Dùng khi update expense: chỉ tính lại ô cũ nếu khác ô mới
+    @Transactional
+    public void refreshMoved(Long userId, LocalDate oldDay, Long oldCategoryId, Expense.PaymentMethod oldMethod, Expense current) {
+        refreshFor(current);
+
+        boolean sameCell = Objects.equals(oldDay, current.getExpenseDate())
+                && Objects.equals(oldCategoryId, current.getCategoryId())
+                && Objects.equals(oldMethod, current.getPaymentMethod());
+        if (!sameCell) {
+            refreshCell(userId, oldDay, oldCategoryId, oldMethod);
+        }
+    }
+
+    // Ghi theo lô: tính lại các ngày bị ảnh hưởng của user bằng 2 câu lệnh thay vì từng ô
+    @Transactional
+    public void refreshDays(Long userId, Collection<LocalDate> days) {
+        if (userId == null || days == null || days.isEmpty()) return;
+
+        rollupRepository.deleteDays(userId, days);
+        rollupRepository.rebuildDays(userId, days);
+    }
+
+    @Transactional
+    public int rebuildForUser(Long userId) {
+        lockUser(userId);
+        rollupRepository.deleteByUser(userId);
+        return rollupRepository.rebuildForUser(userId);
+    }
+
+    @Transactional
+    public int rebuildAll() {
+        rollupRepository.deleteAllCells();
+        return rollupRepository.rebuildAll();
+    }
+}
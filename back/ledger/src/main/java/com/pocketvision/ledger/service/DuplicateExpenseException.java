@@ -0,0 +1,17 @@
+package com.pocketvision.ledger.service;
+
+import lombok.Getter;
+
+/**
+ * Khoản chi mới trùng dấu vân tay với khoản chi đã có và duplicateMode = REJECT.
+ */
+@Getter
+public class DuplicateExpenseException extends RuntimeException {
+
+    private final Long existingExpenseId;
+
+    public DuplicateExpenseException(Long existingExpenseId) {
+        super("Khoản chi này có thể đã được ghi trước đó (trùng số tiền, ngày và cửa hàng)");
+        this.existingExpenseId = existingExpenseId;
+    }
+}
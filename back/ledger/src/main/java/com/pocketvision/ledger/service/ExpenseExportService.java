@@ -0,0 +1,49 @@
+package com.pocketvision.ledger.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.pocketvision.ledger.model.Category;
+import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.repository.CategoryRepository;
+import com.pocketvision.ledger.repository.ExpenseRepository;
+
+import jakarta.persistence.EntityManager;
+
+@Service
+public class ExpenseExportService {
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    /**
+     * Xuất chi tiêu của user trong khoảng ngày ra out. Được gọi từ StreamingResponseBody
+     * nên transaction (và cursor JDBC) chỉ mở trong lúc ghi response.
+     */
+    @Transactional(readOnly = true)
+    public long export(Long userId, LocalDate startDate, LocalDate endDate,
+                       ExpenseExportWriter.Format format, OutputStream out) throws IOException {
+        Map<Long, String> categoryNames = categoryRepository.findByUserId(userId).stream()
+                .collect(Collectors.toMap(Category::getId, Category::getName, (a, b) -> a));
+
+        ExpenseExportWriter writer = new ExpenseExportWriter(format, categoryNames);
+        try (Stream<Expense> expenses = expenseRepository.streamByUserIdAndExpenseDateBetween(userId, startDate, endDate)) {
+            // Detach từng entity sau khi đọc để persistence context không phình theo số dòng
+            return writer.write(expenses.peek(entityManager::detach), startDate, endDate, out);
+        }
+    }
+}
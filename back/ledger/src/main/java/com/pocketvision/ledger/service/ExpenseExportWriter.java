@@ -0,0 +1,338 @@
+package com.pocketvision.ledger.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.service.ReportAccumulator.Output;
+import com.pocketvision.ledger.util.Money;
+
+/**
+ * Ghi danh sách chi tiêu + phần tổng hợp ra CSV hoặc XLSX theo kiểu streaming.
+ * Mỗi dòng được ghi ngay khi đọc từ Stream nên bộ nhớ không phụ thuộc số dòng;
+ * phần tổng hợp được gom bằng ReportAccumulator trong cùng lần duyệt.
+ * XLSX được ghi tay (SpreadsheetML tối thiểu, inline string) để không phải giữ cả workbook trong heap.
+ */
+public class ExpenseExportWriter {
+
+    public enum Format {
+        CSV("csv", "text/csv; charset=UTF-8"),
+        XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() { return extension; }
+
+        public String getContentType() { return contentType; }
+
+        // null nếu định dạng không được hỗ trợ
+        public static Format from(String value) {
+            if (value == null) return null;
+            return switch (value.trim().toLowerCase()) {
+                case "csv" -> CSV;
+                case "xlsx", "excel" -> XLSX;
+                default -> null;
+            };
+        }
+    }
+
+    private static final String[] HEADERS = {
+        "ID", "Ngày", "Cửa hàng", "Danh mục", "Phương thức", "Số tiền", "Ghi chú"
+    };
+
+    private static final String NO_CATEGORY_LABEL = "Khác";
+
+    private final Format format;
+    private final Map<Long, String> categoryNames;
+
+    public ExpenseExportWriter(Format format, Map<Long, String> categoryNames) {
+        this.format = format;
+        this.categoryNames = categoryNames;
+    }
+
+    /**
+     * Ghi toàn bộ stream ra out và trả về số dòng đã ghi. Không đóng out.
+     */
+    public long write(Stream<Expense> expenses, LocalDate startDate, LocalDate endDate, OutputStream out) throws IOException {
+        ReportAccumulator summary = ReportAccumulator.forRange(startDate, endDate, Output.CATEGORY, Output.PAYMENT_METHOD);
+        Iterator<Expense> rows = expenses.iterator();
+
+        if (format == Format.CSV) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            writeCsv(rows, summary, startDate, endDate, writer);
+            writer.flush();
+        } else {
+            ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+            writeXlsx(rows, summary, startDate, endDate, zip);
+            zip.finish();
+            zip.flush();
+        }
+        return summary.getCount();
+    }
+
+    // ================== CSV ==================
+
+    private void writeCsv(Iterator<Expense> rows, ReportAccumulator summary,
+                          LocalDate startDate, LocalDate endDate, Writer w) throws IOException {
+        // BOM để Excel nhận đúng UTF-8 (tiếng Việt)
+        w.write('\uFEFF');
+        writeCsvLine(w, HEADERS);
+
+        String[] cells = new String[HEADERS.length];
+        while (rows.hasNext()) {
+            Expense e = rows.next();
+            summary.add(e);
+            cells[0] = String.valueOf(e.getId());
+            cells[1] = String.valueOf(e.getExpenseDate());
+            cells[2] = csvText(e.getStoreName());
+            cells[3] = csvText(categoryName(e.getCategoryId()));
+            cells[4] = e.getPaymentMethod() != null ? e.getPaymentMethod().name() : "";
+            cells[5] = formatAmount(e.getTotalAmount());
+            cells[6] = csvText(e.getNote());
+            writeCsvLine(w, cells);
+        }
+
+        w.write("\r\n");
+        writeCsvLine(w, "Tổng hợp", startDate + " - " + endDate);
+        writeCsvLine(w, "Số giao dịch", String.valueOf(summary.getCount()));
+        writeCsvLine(w, "Tổng chi", formatAmount(Money.toMajor(summary.getSum())));
+        writeCsvLine(w, "Trung bình", formatAmount(summary.getAverage() / Money.MINOR_PER_UNIT));
+        writeCsvLine(w, "Lớn nhất", formatAmount(Money.toMajor(summary.getMax())));
+        writeCsvLine(w, "Nhỏ nhất", formatAmount(Money.toMajor(summary.getMin())));
+
+        w.write("\r\n");
+        writeCsvLine(w, "Danh mục", "Số tiền");
+        for (Map.Entry<Long, Long> entry : summary.getCategoryTotals().entrySet()) {
+            writeCsvLine(w, csvText(categoryName(entry.getKey())), formatAmount(Money.toMajor(entry.getValue())));
+        }
+
+        w.write("\r\n");
+        writeCsvLine(w, "Phương thức", "Số tiền");
+        for (Map.Entry<Expense.PaymentMethod, Long> entry : summary.getPaymentMethodTotals().entrySet()) {
+            writeCsvLine(w, entry.getKey().name(), formatAmount(Money.toMajor(entry.getValue())));
+        }
+    }
+
+    private static void writeCsvLine(Writer w, String... cells) throws IOException {
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) w.write(',');
+            writeCsvCell(w, cells[i]);
+        }
+        w.write("\r\n");
+    }
+
+    // Chữ do user/OCR nhập (cửa hàng, ghi chú, tên danh mục): Excel/LibreOffice chạy ô bắt đầu bằng = + - @ tab CR
+    // như công thức (CSV injection), nên thêm ' phía trước để ô được hiểu là chữ
+    private static String csvText(String value) {
+        if (value == null || value.isEmpty()) return value;
+        char first = value.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r') {
+            return "'" + value;
+        }
+        return value;
+    }
+
+    private static void writeCsvCell(Writer w, String value) throws IOException {
+        if (value == null || value.isEmpty()) return;
+
+        // Ô đã được csvText thêm ' luôn nằm trong ngoặc kép
+        boolean quote = value.charAt(0) == '\'';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            w.write(value);
+            return;
+        }
+
+        w.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') w.write('"');
+            w.write(c);
+        }
+        w.write('"');
+    }
+
+    // ================== XLSX ==================
+
+    private void writeXlsx(Iterator<Expense> rows, ReportAccumulator summary,
+                           LocalDate startDate, LocalDate endDate, ZipOutputStream zip) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 64 * 1024);
+
+        putEntry(zip, w, "[Content_Types].xml",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+            + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+            + "<Override PartName=\"/xl/worksheets/sheet2.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+            + "</Types>");
+        putEntry(zip, w, "_rels/.rels",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+            + "</Relationships>");
+        putEntry(zip, w, "xl/workbook.xml",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\""
+            + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+            + "<sheets>"
+            + "<sheet name=\"Chi tiêu\" sheetId=\"1\" r:id=\"rId1\"/>"
+            + "<sheet name=\"Tổng hợp\" sheetId=\"2\" r:id=\"rId2\"/>"
+            + "</sheets></workbook>");
+        putEntry(zip, w, "xl/_rels/workbook.xml.rels",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+            + "<Relationship Id=\"rId2\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet2.xml\"/>"
+            + "</Relationships>");
+
+        // Sheet 1: từng giao dịch, ghi dần theo stream
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+        startSheet(w);
+        w.write("<row>");
+        for (String header : HEADERS) {
+            writeStringCell(w, header);
+        }
+        w.write("</row>");
+
+        while (rows.hasNext()) {
+            Expense e = rows.next();
+            summary.add(e);
+            w.write("<row>");
+            writeNumberCell(w, e.getId() != null ? e.getId() : 0);
+            writeStringCell(w, String.valueOf(e.getExpenseDate()));
+            writeStringCell(w, e.getStoreName());
+            writeStringCell(w, categoryName(e.getCategoryId()));
+            writeStringCell(w, e.getPaymentMethod() != null ? e.getPaymentMethod().name() : null);
+            writeNumberCell(w, e.getTotalAmount() != null ? e.getTotalAmount() : 0.0);
+            writeStringCell(w, e.getNote());
+            w.write("</row>");
+        }
+        endSheet(w);
+        w.flush();
+        zip.closeEntry();
+
+        // Sheet 2: tổng hợp, chỉ có sau khi đã duyệt hết dữ liệu
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet2.xml"));
+        startSheet(w);
+        writeSummaryRow(w, "Tổng hợp", startDate + " - " + endDate);
+        writeSummaryRow(w, "Số giao dịch", summary.getCount());
+        writeSummaryRow(w, "Tổng chi", Money.toMajor(summary.getSum()));
+        writeSummaryRow(w, "Trung bình", summary.getAverage() / Money.MINOR_PER_UNIT);
+        writeSummaryRow(w, "Lớn nhất", Money.toMajor(summary.getMax()));
+        writeSummaryRow(w, "Nhỏ nhất", Money.toMajor(summary.getMin()));
+        w.write("<row/>");
+        writeSummaryRow(w, "Danh mục", "Số tiền");
+        for (Map.Entry<Long, Long> entry : summary.getCategoryTotals().entrySet()) {
+            writeSummaryRow(w, categoryName(entry.getKey()), Money.toMajor(entry.getValue()));
+        }
+        w.write("<row/>");
+        writeSummaryRow(w, "Phương thức", "Số tiền");
+        for (Map.Entry<Expense.PaymentMethod, Long> entry : summary.getPaymentMethodTotals().entrySet()) {
+            writeSummaryRow(w, entry.getKey().name(), Money.toMajor(entry.getValue()));
+        }
+        endSheet(w);
+        w.flush();
+        zip.closeEntry();
+    }
+
+    private static void putEntry(ZipOutputStream zip, Writer w, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        w.write(content);
+        w.flush();
+        zip.closeEntry();
+    }
+
+    private static void startSheet(Writer w) throws IOException {
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+    }
+
+    private static void endSheet(Writer w) throws IOException {
+        w.write("</sheetData></worksheet>");
+    }
+
+    private static void writeSummaryRow(Writer w, String label, String value) throws IOException {
+        w.write("<row>");
+        writeStringCell(w, label);
+        writeStringCell(w, value);
+        w.write("</row>");
+    }
+
+    private static void writeSummaryRow(Writer w, String label, double value) throws IOException {
+        w.write("<row>");
+        writeStringCell(w, label);
+        writeNumberCell(w, value);
+        w.write("</row>");
+    }
+
+    private static void writeStringCell(Writer w, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            w.write("<c/>");
+            return;
+        }
+        w.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> w.write("&amp;");
+                case '<' -> w.write("&lt;");
+                case '>' -> w.write("&gt;");
+                case '"' -> w.write("&quot;");
+                default -> {
+                    // Bỏ ký tự điều khiển không hợp lệ trong XML 1.0
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        w.write(c);
+                    }
+                }
+            }
+        }
+        w.write("</t></is></c>");
+    }
+
+    private static void writeNumberCell(Writer w, double value) throws IOException {
+        w.write("<c><v>");
+        w.write(formatAmount(value));
+        w.write("</v></c>");
+    }
+
+    // ================== Helpers ==================
+
+    private String categoryName(Long categoryId) {
+        if (categoryId == null) return NO_CATEGORY_LABEL;
+        return categoryNames.getOrDefault(categoryId, NO_CATEGORY_LABEL);
+    }
+
+    // Số tiền VND thường là số nguyên: bỏ ".0" cho gọn
+    private static String formatAmount(Double amount) {
+        if (amount == null) return "";
+        double value = amount;
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,276 @@
+package com.pocketvision.ledger.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.repository.ExpenseRepository;
+import com.pocketvision.ledger.util.Money;
+import com.pocketvision.ledger.util.TextNormalizer;
+
+/**
+ * Chỉ mục trigram (inverted index) trong bộ nhớ cho tìm kiếm chi tiêu theo từ khóa.
+ * Mỗi user có một chỉ mục riêng, được dựng lần đầu khi user tìm kiếm và bị loại theo LRU hoặc sau ttl-seconds.
+ * Cùng ngữ nghĩa với LIKE '%kw%' trên storeName, note (bản không dấu) và số tiền: trigram chỉ dùng để lọc ứng viên,
+ * sau đó kiểm tra lại bằng contains nên không có kết quả sai.
+ * Tùy chọn, mặc định tắt (application.search.index.enabled=true để bật). Chỉ dùng khi chạy một instance:
+ * chỉ mục chỉ được cập nhật bởi các lần ghi trên chính instance này; TTL chỉ giới hạn độ trễ nếu lỡ chạy nhiều instance.
+ */
+@Component
+public class ExpenseSearchIndex {
+
+    private static final int GRAM = 3;
+
+    // Bản chụp các trường cần tìm của một expense (đã chuẩn hóa không dấu)
+    private record Doc(Long id, LocalDate expenseDate, String storeName, String note, String amount) {
+
+        boolean contains(String keyword) {
+            return storeName.contains(keyword) || note.contains(keyword) || amount.contains(keyword);
+        }
+
+        // Khớp tên cửa hàng quan trọng hơn ghi chú/số tiền; khớp đầu tên được ưu tiên nhất
+        int score(String keyword) {
+            int score = 0;
+            if (storeName.startsWith(keyword)) score += 4;
+            else if (storeName.contains(keyword)) score += 3;
+            if (note.contains(keyword)) score += 1;
+            if (amount.contains(keyword)) score += 1;
+            return score;
+        }
+    }
+
+    private record Hit(Doc doc, int score) {}
+
+    private static final Comparator<Hit> RANKING = Comparator
+            .comparingInt(Hit::score).reversed()
+            .thenComparing(hit -> hit.doc().expenseDate(), Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(hit -> hit.doc().id(), Comparator.reverseOrder());
+
+    private static final class UserIndex {
+        private final long builtAt = System.currentTimeMillis();
+        private final Map<Long, Doc> docs = new HashMap<>();
+        private final Map<String, Set<Long>> postings = new HashMap<>();
+
+        synchronized void put(Doc doc) {
+            remove(doc.id());
+            docs.put(doc.id(), doc);
+            for (String gram : gramsOf(doc)) {
+                postings.computeIfAbsent(gram, g -> new HashSet<>()).add(doc.id());
+            }
+        }
+
+        synchronized void remove(Long id) {
+            Doc old = docs.remove(id);
+            if (old == null) return;
+            for (String gram : gramsOf(old)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) postings.remove(gram);
+                }
+            }
+        }
+
+        synchronized List<Long> search(String keyword) {
+            List<Hit> hits = new ArrayList<>();
+
+            if (keyword.length() < GRAM) {
+                // Từ khóa quá ngắn để có trigram: duyệt trực tiếp
+                for (Doc doc : docs.values()) {
+                    if (doc.contains(keyword)) hits.add(new Hit(doc, doc.score(keyword)));
+                }
+            } else {
+                for (Long id : candidates(keyword)) {
+                    Doc doc = docs.get(id);
+                    if (doc.contains(keyword)) hits.add(new Hit(doc, doc.score(keyword)));
+                }
+            }
+
+            hits.sort(RANKING);
+            List<Long> ids = new ArrayList<>(hits.size());
+            for (Hit hit : hits) ids.add(hit.doc().id());
+            return ids;
+        }
+
+        // Giao các posting list, bắt đầu từ list ngắn nhất
+        private Set<Long> candidates(String keyword) {
+            List<Set<Long>> lists = new ArrayList<>();
+            for (String gram : grams(keyword)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids == null) return Set.of();
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+
+            Set<Long> result = new HashSet<>(lists.get(0));
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result.retainAll(lists.get(i));
+            }
+            return result;
+        }
+    }
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    private final boolean enabled;
+    private final int maxUsers;
+    private final long ttlMillis;
+    private final Map<Long, UserIndex> indexes;
+
+    // Tăng mỗi khi dữ liệu của user thay đổi, để bỏ chỉ mục được dựng song song với thay đổi đó.
+    // Chỉ có key cho user đang có chỉ mục hoặc đang dựng; bị xóa cùng chỉ mục (khi đó lần dựng dở dang so sánh
+    // khác đối tượng và không được lưu)
+    private final Map<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public ExpenseSearchIndex(
+            @Value("${application.search.index.enabled:false}") boolean enabled,
+            @Value("${application.search.index.max-users:200}") int maxUsers,
+            @Value("${application.search.index.ttl-seconds:300}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.maxUsers = maxUsers;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.indexes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UserIndex> eldest) {
+                if (size() <= ExpenseSearchIndex.this.maxUsers) return false;
+                generations.remove(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Trả về ID các expense khớp từ khóa, đã xếp hạng (khớp tốt hơn trước, cùng điểm thì mới hơn trước).
+     */
+    public List<Long> search(Long userId, String keyword) {
+        return indexFor(userId).search(TextNormalizer.normalize(keyword));
+    }
+
+    // Gọi sau khi tạo/cập nhật expense; nếu đang trong transaction thì áp dụng sau commit
+    public void onSaved(Expense expense) {
+        Doc doc = toDoc(expense);
+        Long userId = expense.getUserId();
+        afterCommit(() -> {
+            bumpGeneration(userId);
+            UserIndex index = loadedIndex(userId);
+            if (index != null) index.put(doc);
+        });
+    }
+
+    public void onDeleted(Long userId, Long expenseId) {
+        afterCommit(() -> {
+            bumpGeneration(userId);
+            UserIndex index = loadedIndex(userId);
+            if (index != null) index.remove(expenseId);
+        });
+    }
+
+    private UserIndex indexFor(Long userId) {
+        UserIndex index = loadedIndex(userId);
+        if (index != null) return index;
+
+        AtomicLong generation = generations.computeIfAbsent(userId, id -> new AtomicLong());
+        long seen = generation.get();
+        UserIndex built = new UserIndex();
+        for (Expense expense : expenseRepository.findByUserId(userId)) {
+            built.put(toDoc(expense));
+        }
+
+        synchronized (indexes) {
+            UserIndex existing = loadedIndex(userId);
+            if (existing != null) return existing;
+            if (generations.get(userId) == generation && generation.get() == seen) {
+                indexes.put(userId, built);
+            } else {
+                generations.remove(userId, generation);
+            }
+        }
+        return built;
+    }
+
+    // Chỉ mục quá ttl-seconds bị bỏ để lần tìm sau dựng lại từ DB
+    private UserIndex loadedIndex(Long userId) {
+        synchronized (indexes) {
+            UserIndex index = indexes.get(userId);
+            if (index != null && System.currentTimeMillis() - index.builtAt > ttlMillis) {
+                indexes.remove(userId);
+                generations.remove(userId);
+                return null;
+            }
+            return index;
+        }
+    }
+
+    // User chưa có chỉ mục thì không cần ghi nhận: lần dựng sau đọc DB sau commit nên đã thấy thay đổi
+    private void bumpGeneration(Long userId) {
+        AtomicLong generation = generations.get(userId);
+        if (generation != null) generation.incrementAndGet();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Doc toDoc(Expense expense) {
+        return new Doc(
+            expense.getId(),
+            expense.getExpenseDate(),
+            normalized(expense.getStoreName()),
+            normalized(expense.getNote()),
+            amountText(expense.getTotalAmountMinor())
+        );
+    }
+
+    private static String normalized(String value) {
+        return value == null ? "" : TextNormalizer.normalize(value);
+    }
+
+    // Cùng dạng chữ với đường tìm trong DB (xem Money.toPlainString): "50000", "12345.5"
+    private static String amountText(Long amountMinor) {
+        return amountMinor == null ? "" : Money.toPlainString(amountMinor);
+    }
+
+    private static Set<String> gramsOf(Doc doc) {
+        Set<String> grams = grams(doc.storeName());
+        grams.addAll(grams(doc.note()));
+        grams.addAll(grams(doc.amount()));
+        return grams;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
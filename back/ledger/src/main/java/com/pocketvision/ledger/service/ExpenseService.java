@@ -2,13 +2,31 @@ package com.pocketvision.ledger.service;
 
 import java.util.List;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import com.pocketvision.ledger.dto.BatchItemResult;
+import com.pocketvision.ledger.dto.CursorPage;
+import com.pocketvision.ledger.dto.DuplicateMode;
+import com.pocketvision.ledger.dto.ExpenseFilter;
+import com.pocketvision.ledger.dto.ExpenseSummary;
 import com.pocketvision.ledger.model.Expense;
 
 public interface ExpenseService {
     List<Expense> getExpensesByUser(Long userId);
+    CursorPage<Expense> getExpensesPage(Long userId, String cursor, Integer limit);
+    List<ExpenseSummary> getExpenseSummaries(Long userId);
+    CursorPage<ExpenseSummary> getExpenseSummaryPage(Long userId, String cursor, Integer limit);
+    Page<Expense> filterExpenses(ExpenseFilter filter, Pageable pageable);
+    List<Expense> filterExpenses(ExpenseFilter filter, Sort sort);
     Expense createExpense(Expense expense);
+    Expense createExpense(Expense expense, DuplicateMode duplicateMode);
+    List<BatchItemResult> createExpensesBatch(List<Expense> expenses);
+    void validateExpense(Expense expense);
     Expense updateExpense(Long id, Expense expense);
     void deleteExpense(Long id);
     Expense getExpenseById(Long id);
     List<Expense> searchExpenses(Long userId, String keyword);
+    List<List<Expense>> findDuplicateGroups(Long userId);
 }
@@ -1,31 +1,76 @@
 package com.pocketvision.ledger.service;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.pocketvision.ledger.model.Budget;
+import com.pocketvision.ledger.dto.BatchItemResult;
+import com.pocketvision.ledger.dto.CursorPage;
+import com.pocketvision.ledger.dto.DuplicateMode;
+import com.pocketvision.ledger.dto.ExpenseFilter;
+import com.pocketvision.ledger.dto.ExpenseSummary;
+import com.pocketvision.ledger.event.ExpenseCreatedEvent;
+import com.pocketvision.ledger.event.ExpenseDeletedEvent;
+import com.pocketvision.ledger.event.ExpenseUpdatedEvent;
+import com.pocketvision.ledger.event.ExpensesBatchCreatedEvent;
 import com.pocketvision.ledger.model.Expense;
-import com.pocketvision.ledger.model.Notification;
-import com.pocketvision.ledger.repository.BudgetRepository;
+import com.pocketvision.ledger.repository.ExpenseJdbcRepository;
 import com.pocketvision.ledger.repository.ExpenseRepository;
+import com.pocketvision.ledger.repository.ExpenseSpecifications;
+import com.pocketvision.ledger.util.TextNormalizer;
 
 @Service
 public class ExpenseServiceImpl implements ExpenseService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final double MAX_AMOUNT = 9999999999.0;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DUPLICATE_SCAN_CHUNK = 500;
+    // ngram_token_size mặc định của MySQL (chỉ mục ft_expense_search)
+    private static final int FULLTEXT_MIN_WORD = 2;
+    // Dưới ngưỡng này duyệt thẳng các dòng của user rẻ hơn FULLTEXT (xem searchInDatabase)
+    private static final long FULLTEXT_MIN_USER_EXPENSES = 5000;
+    private static final Pattern AMOUNT_KEYWORD = Pattern.compile("\\d[\\d.]*");
+
+    // Vị trí (expenseDate, id) của dòng cuối trang trước
+    private record PageCursor(LocalDate expenseDate, Long id) {}
+
     @Autowired
     private ExpenseRepository expenseRepository;
 
     @Autowired
-    private BudgetRepository budgetRepository;
+    private ExpenseJdbcRepository expenseJdbcRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private DailySpendRollupService rollupService;
 
     @Autowired
-    private NotificationService notificationService;
+    private ReportCache reportCache;
+
+    @Autowired
+    private ExpenseSearchIndex searchIndex;
 
     // ==========================================
     // CÁC PHƯƠNG THỨC LẤY DỮ LIỆU
@@ -36,6 +81,68 @@ public class ExpenseServiceImpl implements ExpenseService {
         return expenseRepository.findByUserId(userId);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<Expense> getExpensesPage(Long userId, String cursor, Integer limit) {
+        int pageSize = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<Expense> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = expenseRepository.findFirstPageByUserId(userId, Limit.of(pageSize + 1));
+        } else {
+            PageCursor after = decodeCursor(cursor);
+            rows = expenseRepository.findPageByUserIdAfter(userId, after.expenseDate(), after.id(), Limit.of(pageSize + 1));
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Expense> items = hasMore ? rows.subList(0, pageSize) : rows;
+        Expense last = items.isEmpty() ? null : items.get(items.size() - 1);
+        String nextCursor = hasMore ? encodeCursor(last.getExpenseDate(), last.getId()) : null;
+
+        return new CursorPage<>(items, nextCursor, hasMore, pageSize);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ExpenseSummary> getExpenseSummaries(Long userId) {
+        return expenseRepository.findSummariesByUserId(userId, Limit.unlimited());
+    }
+
+    // Cùng cursor/thứ tự với getExpensesPage, nhưng chỉ đọc các cột hiển thị trong danh sách
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<ExpenseSummary> getExpenseSummaryPage(Long userId, String cursor, Integer limit) {
+        int pageSize = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+
+        List<ExpenseSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = expenseRepository.findSummariesByUserId(userId, Limit.of(pageSize + 1));
+        } else {
+            PageCursor after = decodeCursor(cursor);
+            rows = expenseRepository.findSummaryPageByUserIdAfter(userId, after.expenseDate(), after.id(), Limit.of(pageSize + 1));
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<ExpenseSummary> items = hasMore ? rows.subList(0, pageSize) : rows;
+        ExpenseSummary last = items.isEmpty() ? null : items.get(items.size() - 1);
+        String nextCursor = hasMore ? encodeCursor(last.getExpenseDate(), last.getId()) : null;
+
+        return new CursorPage<>(items, nextCursor, hasMore, pageSize);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Expense> filterExpenses(ExpenseFilter filter, Pageable pageable) {
+        return expenseRepository.findAll(ExpenseSpecifications.matching(filter), pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Expense> filterExpenses(ExpenseFilter filter, Sort sort) {
+        return expenseRepository.findAll(ExpenseSpecifications.matching(filter), sort);
+    }
+
     @Override
     public Expense getExpenseById(Long id) {
         return expenseRepository.findById(id).orElse(null);
@@ -43,7 +150,42 @@ public class ExpenseServiceImpl implements ExpenseService {
 
     @Override
     public List<Expense> searchExpenses(Long userId, String keyword) {
-        return expenseRepository.searchByKeyword(userId, keyword);
+        if (!searchIndex.isEnabled()) {
+            return searchInDatabase(userId, TextNormalizer.normalize(keyword));
+        }
+
+        // Chỉ mục trả về ID đã xếp hạng; nạp entity theo khóa chính rồi giữ nguyên thứ tự đó
+        List<Long> rankedIds = searchIndex.search(userId, keyword);
+        if (rankedIds.isEmpty()) return List.of();
+
+        Map<Long, Expense> byId = new HashMap<>();
+        for (Expense expense : expenseRepository.findAllById(rankedIds)) {
+            byId.put(expense.getId(), expense);
+        }
+
+        List<Expense> results = new ArrayList<>(rankedIds.size());
+        for (Long id : rankedIds) {
+            Expense expense = byId.get(id);
+            if (expense != null) results.add(expense);
+        }
+        return results;
+    }
+
+    // Các nhóm khoản chi cùng dấu vân tay (mỗi nhóm >= 2), nhóm có khoản chi mới nhất lên trước
+    @Override
+    @Transactional(readOnly = true)
+    public List<List<Expense>> findDuplicateGroups(Long userId) {
+        List<String> fingerprints = expenseRepository.findDuplicateFingerprints(userId);
+        if (fingerprints.isEmpty()) return List.of();
+
+        Map<String, List<Expense>> groups = new LinkedHashMap<>();
+        for (int from = 0; from < fingerprints.size(); from += DUPLICATE_SCAN_CHUNK) {
+            List<String> chunk = fingerprints.subList(from, Math.min(from + DUPLICATE_SCAN_CHUNK, fingerprints.size()));
+            for (Expense expense : expenseRepository.findByUserIdAndFingerprintIn(userId, chunk)) {
+                groups.computeIfAbsent(expense.getFingerprint(), fp -> new ArrayList<>()).add(expense);
+            }
+        }
+        return new ArrayList<>(groups.values());
     }
 
     // ==========================================
@@ -53,17 +195,89 @@ public class ExpenseServiceImpl implements ExpenseService {
     @Override
     @Transactional
     public Expense createExpense(Expense expense) {
+        return createExpense(expense, DuplicateMode.FLAG);
+    }
+
+    @Override
+    @Transactional
+    public Expense createExpense(Expense expense, DuplicateMode duplicateMode) {
         validateExpense(expense);
 
+        // Khóa user trước khi kiểm tra trùng và ghi (xem DailySpendRollupService)
+        rollupService.lockUser(expense.getUserId());
+
+        Long duplicateOf = duplicateMode == DuplicateMode.ALLOW ? null : findDuplicateId(expense);
+        if (duplicateOf != null && duplicateMode == DuplicateMode.REJECT) {
+            throw new DuplicateExpenseException(duplicateOf);
+        }
+
         Expense savedExpense = expenseRepository.save(expense);
+        if (duplicateMode != DuplicateMode.ALLOW) {
+            savedExpense.setPossibleDuplicate(duplicateOf != null);
+        }
 
-        updateRelatedBudget(savedExpense.getUserId(), savedExpense.getCategoryId(), savedExpense.getExpenseDate());
+        rollupService.refreshFor(savedExpense);
+        reportCache.invalidateUser(savedExpense.getUserId());
+        searchIndex.onSaved(savedExpense);
 
-        checkBudgetAndNotify(savedExpense);
+        eventPublisher.publishEvent(ExpenseCreatedEvent.of(savedExpense));
 
         return savedExpense;
     }
 
+    /**
+     * Tạo nhiều expense trong một transaction: phần tử không hợp lệ bị bỏ qua (báo lỗi theo index),
+     * phần còn lại được insert bằng JDBC batch. Rollup được tính lại một lần cho mỗi user,
+     * ngân sách được cập nhật sau commit qua một sự kiện duy nhất cho cả lô.
+     */
+    @Override
+    @Transactional
+    public List<BatchItemResult> createExpensesBatch(List<Expense> expenses) {
+        BatchItemResult[] results = new BatchItemResult[expenses.size()];
+        List<Expense> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+
+        for (int i = 0; i < expenses.size(); i++) {
+            Expense expense = expenses.get(i);
+            try {
+                if (expense == null) {
+                    throw new IllegalArgumentException("Dữ liệu chi tiêu trống");
+                }
+                validateExpense(expense);
+                expense.setId(null);
+                valid.add(expense);
+                validIndexes.add(i);
+            } catch (IllegalArgumentException e) {
+                results[i] = BatchItemResult.failed(i, e.getMessage());
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            rollupService.lockUsers(valid.stream().map(Expense::getUserId).toList());
+            expenseJdbcRepository.batchInsert(valid);
+
+            Map<Long, Set<LocalDate>> daysByUser = new HashMap<>();
+            List<ExpenseCreatedEvent> created = new ArrayList<>(valid.size());
+            for (int i = 0; i < valid.size(); i++) {
+                Expense saved = valid.get(i);
+                results[validIndexes.get(i)] = BatchItemResult.created(validIndexes.get(i), saved.getId());
+
+                daysByUser.computeIfAbsent(saved.getUserId(), id -> new HashSet<>()).add(saved.getExpenseDate());
+                created.add(ExpenseCreatedEvent.of(saved));
+                searchIndex.onSaved(saved);
+            }
+
+            daysByUser.forEach((userId, days) -> {
+                rollupService.refreshDays(userId, days);
+                reportCache.invalidateUser(userId);
+            });
+
+            eventPublisher.publishEvent(new ExpensesBatchCreatedEvent(created));
+        }
+
+        return Arrays.asList(results);
+    }
+
     @Override
     @Transactional
     public Expense updateExpense(Long id, Expense updatedExpense) {
@@ -72,8 +286,12 @@ public class ExpenseServiceImpl implements ExpenseService {
 
         validateExpense(updatedExpense);
 
+        rollupService.lockUser(existingExpense.getUserId());
+
         Long oldCategoryId = existingExpense.getCategoryId();
         LocalDate oldDate = existingExpense.getExpenseDate();
+        Expense.PaymentMethod oldPaymentMethod = existingExpense.getPaymentMethod();
+        long oldAmountMinor = existingExpense.getTotalAmountMinor();
 
         existingExpense.setStoreName(updatedExpense.getStoreName());
         existingExpense.setTotalAmount(updatedExpense.getTotalAmount());
@@ -84,16 +302,11 @@ public class ExpenseServiceImpl implements ExpenseService {
 
         Expense savedExpense = expenseRepository.save(existingExpense);
 
-        updateRelatedBudget(savedExpense.getUserId(), savedExpense.getCategoryId(), savedExpense.getExpenseDate());
-
-        boolean categoryChanged = !oldCategoryId.equals(savedExpense.getCategoryId());
-        boolean monthChanged = !getYearMonth(oldDate).equals(getYearMonth(savedExpense.getExpenseDate()));
+        rollupService.refreshMoved(savedExpense.getUserId(), oldDate, oldCategoryId, oldPaymentMethod, savedExpense);
+        reportCache.invalidateUser(savedExpense.getUserId());
+        searchIndex.onSaved(savedExpense);
 
-        if (categoryChanged || monthChanged) {
-            updateRelatedBudget(savedExpense.getUserId(), oldCategoryId, oldDate);
-        }
-
-        checkBudgetAndNotify(savedExpense);
+        eventPublisher.publishEvent(ExpenseUpdatedEvent.of(savedExpense, oldCategoryId, oldDate, oldAmountMinor));
 
         return savedExpense;
     }
@@ -107,23 +320,73 @@ public class ExpenseServiceImpl implements ExpenseService {
         Long userId = expense.getUserId();
         Long categoryId = expense.getCategoryId();
         LocalDate expenseDate = expense.getExpenseDate();
+        Expense.PaymentMethod paymentMethod = expense.getPaymentMethod();
+        long amountMinor = expense.getTotalAmountMinor();
 
+        rollupService.lockUser(userId);
         expenseRepository.delete(expense);
 
-        updateRelatedBudget(userId, categoryId, expenseDate);
+        rollupService.refreshCell(userId, expenseDate, categoryId, paymentMethod);
+        reportCache.invalidateUser(userId);
+        searchIndex.onDeleted(userId, id);
+
+        eventPublisher.publishEvent(new ExpenseDeletedEvent(id, userId, categoryId, expenseDate, amountMinor));
     }
 
     // ========================================================================
     // CÁC HÀM HỖ TRỢ (PRIVATE HELPERS)
     // ========================================================================
 
-    private void validateExpense(Expense expense) {
+    // Theo chữ qua FULLTEXT ngram (+ theo số tiền nếu từ khóa là số); từ khóa có từ ngắn hơn ngram thì duyệt expense của user.
+    // Kết quả mới nhất trước
+    private List<Expense> searchInDatabase(Long userId, String keyword) {
+        if (keyword == null || keyword.isEmpty()) return List.of();
+
+        String phrase = keyword.replaceAll("[\"+\\-<>()~*@]", " ").trim();
+        boolean fullTextUsable = !phrase.isEmpty()
+                && Arrays.stream(phrase.split(" ")).allMatch(word -> word.isEmpty() || word.length() >= FULLTEXT_MIN_WORD);
+        // MATCH luôn chạy trên chỉ mục FULLTEXT chung của mọi user rồi mới lọc user_id (InnoDB không giới hạn được
+        // chỉ mục theo user), nên chi phí theo số dòng khớp của cả bảng. User ít dữ liệu: duyệt dòng của chính user
+        // qua idx_expense_user_date (chi phí theo dữ liệu của user); chỉ user nhiều dữ liệu mới dùng FULLTEXT
+        if (!fullTextUsable || expenseRepository.countByUserId(userId) < FULLTEXT_MIN_USER_EXPENSES) {
+            return sortedNewestFirst(expenseRepository.searchByKeyword(userId, keyword));
+        }
+
+        Map<Long, Expense> byId = new LinkedHashMap<>();
+        for (Expense expense : expenseRepository.searchTextByKeyword(userId, keyword, "\"" + phrase + "\"")) {
+            byId.put(expense.getId(), expense);
+        }
+        if (AMOUNT_KEYWORD.matcher(keyword).matches()) {
+            for (Expense expense : expenseRepository.searchByAmountText(userId, keyword)) {
+                byId.putIfAbsent(expense.getId(), expense);
+            }
+        }
+        return sortedNewestFirst(new ArrayList<>(byId.values()));
+    }
+
+    private static List<Expense> sortedNewestFirst(List<Expense> expenses) {
+        expenses.sort(Comparator.comparing(Expense::getExpenseDate, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(Expense::getId, Comparator.reverseOrder()));
+        return expenses;
+    }
+
+    private Long findDuplicateId(Expense expense) {
+        List<Long> ids = expenseRepository.findIdsByFingerprint(expense.getUserId(), expense.computeFingerprint(), Limit.of(1));
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    // Ràng buộc chung cho mọi đường ghi expense (kể cả quy tắc chi tiêu định kỳ, xem RecurringExpenseService)
+    @Override
+    public void validateExpense(Expense expense) {
         if (expense.getUserId() == null) {
             throw new IllegalArgumentException("Thiếu thông tin người dùng");
         }
         if (expense.getTotalAmount() == null || expense.getTotalAmount() <= 0) {
             throw new IllegalArgumentException("Số tiền phải lớn hơn 0");
         }
+        if (expense.getTotalAmount() > MAX_AMOUNT) {
+            throw new IllegalArgumentException("Giá trị vượt mức cho phép");
+        }
         if (expense.getCategoryId() == null) {
             throw new IllegalArgumentException("Vui lòng chọn danh mục chi tiêu");
         }
@@ -135,68 +398,18 @@ public class ExpenseServiceImpl implements ExpenseService {
         }
     }
 
-    private String getYearMonth(LocalDate date) {
-        return date.format(DateTimeFormatter.ofPattern("yyyy-MM"));
+    private String encodeCursor(LocalDate expenseDate, Long id) {
+        String raw = expenseDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 
-    private void updateRelatedBudget(Long userId, Long categoryId, LocalDate date) {
-        if (categoryId == null || date == null) return;
-
-        String monthYear = getYearMonth(date);
-
-        Optional<Budget> budgetOpt = budgetRepository.findByUserIdAndCategoryIdAndMonthYear(
-                userId, categoryId, monthYear
-        );
-
-        budgetOpt.ifPresent(budget -> {
-            LocalDate startDate = date.withDayOfMonth(1);
-            LocalDate endDate = date.withDayOfMonth(date.lengthOfMonth());
-
-            List<Expense> expenses = expenseRepository.findByUserIdAndCategoryIdAndExpenseDateBetween(
-                    userId, categoryId, startDate, endDate
-            );
-
-            double totalSpent = expenses.stream()
-                    .mapToDouble(Expense::getTotalAmount)
-                    .sum();
-            
-            budget.setSpentAmount(totalSpent);
-            budgetRepository.save(budget);
-        });
-    }
-
-    // --- Đã sửa lỗi thiếu tham số Title tại đây ---
-    private void checkBudgetAndNotify(Expense expense) {
-        if (expense.getCategoryId() == null || expense.getExpenseDate() == null) return;
-
-        String monthYear = getYearMonth(expense.getExpenseDate());
-
-        budgetRepository.findByUserIdAndCategoryIdAndMonthYear(
-                expense.getUserId(), expense.getCategoryId(), monthYear
-        ).ifPresent(budget -> {
-            
-            if (budget.getLimitAmount() > 0) {
-                double percentage = (budget.getSpentAmount() / budget.getLimitAmount()) * 100;
-
-                if (percentage >= 100) {
-                    notificationService.createNotification(
-                        expense.getUserId(),
-                        "Vỡ ngân sách!", // Title (Tham số thứ 2)
-                        String.format("CẢNH BÁO: Bạn đã tiêu %.0f%% (vượt mức) cho danh mục này!", percentage), // Message
-                        Notification.NotificationType.BUDGET_WARNING, // Type
-                        budget.getId() // Related ID
-                    );
-                } 
-                else if (percentage >= 80) {
-                    notificationService.createNotification(
-                        expense.getUserId(),
-                        "Cảnh báo giới hạn", // Title (Tham số thứ 2)
-                        String.format("Cẩn thận! Bạn đã sử dụng %.0f%% ngân sách tháng này.", percentage), // Message
-                        Notification.NotificationType.BUDGET_WARNING, // Type
-                        budget.getId() // Related ID
-                    );
-                }
-            }
-        });
+    private PageCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new PageCursor(LocalDate.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor phân trang không hợp lệ");
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,230 @@
+package com.pocketvision.ledger.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pocketvision.ledger.model.IdempotencyRecord;
+import com.pocketvision.ledger.repository.IdempotencyRecordRepository;
+
+/**
+ * Xử lý header Idempotency-Key cho các endpoint ghi: request lặp lại (cùng scope + key) nhận lại đúng response
+ * của lần đầu thay vì ghi thêm một lần nữa.
+ * Response thành công (2xx) được lưu trong bảng idempotency_keys (có TTL) và cache LRU trong bộ nhớ;
+ * response lỗi không được lưu để client có thể thử lại với cùng key.
+ *
+ * Bản ghi key và thao tác ghi nằm trong cùng một transaction (service được gọi tham gia transaction này):
+ * hoặc cả expense lẫn response đã lưu cùng commit, hoặc không có gì. Vì vậy không còn bản ghi "đang xử lý" nào
+ * được commit, và không có trường hợp đã ghi xong nhưng key vẫn bị coi là chưa dùng.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    // expiresAt trùng với bản ghi trong DB: cache không được trả response lâu hơn TTL của key
+    private record StoredResponse(String requestHash, int statusCode, String body, LocalDateTime expiresAt) {}
+
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlHours;
+    private final int cacheSize;
+    private final Map<String, StoredResponse> cache;
+
+    public IdempotencyService(
+            PlatformTransactionManager transactionManager,
+            @Value("${application.idempotency.ttl-hours:24}") long ttlHours,
+            @Value("${application.idempotency.cache-size:10000}") int cacheSize) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlHours = ttlHours;
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > IdempotencyService.this.cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Chạy action nếu key chưa được dùng, ngược lại trả về response đã lưu.
+     * key rỗng -> chạy action như bình thường. Request trùng key đến khi request đầu còn chạy sẽ chờ nó kết thúc
+     * (khóa của unique key) rồi nhận lại response; chờ quá lâu thì trả về 409. Trả về 422 nếu key đã được dùng với body khác.
+     */
+    public ResponseEntity<?> execute(String scope, String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Idempotency-Key quá dài (tối đa " + MAX_KEY_LENGTH + " ký tự)"));
+        }
+
+        String cacheKey = scope + "|" + key;
+        String requestHash = hash(request);
+
+        StoredResponse cached;
+        synchronized (cache) {
+            cached = cache.get(cacheKey);
+            // Hết hạn thì coi như không có trong cache; bản ghi DB tương ứng cũng hết hạn và bị xóa ở dưới
+            if (cached != null && cached.expiresAt().isBefore(LocalDateTime.now())) {
+                cache.remove(cacheKey);
+                cached = null;
+            }
+        }
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        Optional<IdempotencyRecord> existing = findLive(scope, key);
+        if (existing.isPresent()) {
+            return replay(existing.get(), cacheKey, requestHash);
+        }
+
+        StoredResponse[] saved = new StoredResponse[1];
+        ResponseEntity<?> response;
+        try {
+            response = transactionTemplate.execute(status -> {
+                // Giữ chỗ trước khi ghi: request cùng key chạy song song sẽ chờ ở unique (scope, idem_key)
+                // tới khi transaction này commit (rồi nhận lỗi trùng) hoặc rollback (rồi tự chạy)
+                IdempotencyRecord record = recordRepository.saveAndFlush(newRecord(scope, key, requestHash));
+
+                ResponseEntity<?> result = action.get();
+                if (!result.getStatusCode().is2xxSuccessful()) {
+                    // Bỏ cả thao tác ghi (nếu có) lẫn giữ chỗ để client thử lại với cùng key
+                    status.setRollbackOnly();
+                    return result;
+                }
+
+                record.setStatusCode(result.getStatusCode().value());
+                record.setResponseBody(toJson(result.getBody()));
+                recordRepository.save(record);
+                saved[0] = new StoredResponse(requestHash, record.getStatusCode(), record.getResponseBody(), record.getExpiresAt());
+                return result;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Request đầu tiên với key này vừa commit trong lúc request này chờ
+            return findLive(scope, key)
+                    .map(record -> replay(record, cacheKey, requestHash))
+                    .orElseGet(IdempotencyService::inProgress);
+        } catch (PessimisticLockingFailureException e) {
+            return inProgress();
+        }
+
+        if (saved[0] != null) {
+            remember(cacheKey, saved[0]);
+        }
+        return response;
+    }
+
+    // Bản ghi đã commit của key; hết hạn thì xóa để key được dùng lại
+    private Optional<IdempotencyRecord> findLive(String scope, String key) {
+        Optional<IdempotencyRecord> existing = recordRepository.findByScopeAndKey(scope, key);
+        if (existing.isPresent() && existing.get().getExpiresAt().isBefore(LocalDateTime.now())) {
+            recordRepository.delete(existing.get());
+            return Optional.empty();
+        }
+        return existing;
+    }
+
+    @Scheduled(fixedDelayString = "${application.idempotency.cleanup-interval-ms:600000}")
+    @Transactional
+    public void removeExpiredKeys() {
+        int removed = recordRepository.deleteExpired(LocalDateTime.now());
+        if (removed > 0) {
+            System.out.println("🧹 Đã xóa " + removed + " idempotency key hết hạn");
+        }
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord record, String cacheKey, String requestHash) {
+        if (record.getStatusCode() == null) {
+            // Chỉ có ở dữ liệu cũ (trước khi lưu response cùng transaction): không biết lần ghi đã xảy ra hay chưa,
+            // nên không chạy lại mà trả 409 tới khi key hết hạn
+            return inProgress();
+        }
+        StoredResponse stored = new StoredResponse(record.getRequestHash(), record.getStatusCode(),
+                record.getResponseBody(), record.getExpiresAt());
+        remember(cacheKey, stored);
+        return replay(stored, requestHash);
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            return ResponseEntity.unprocessableEntity()
+                    .body(Map.of("message", "Idempotency-Key đã được dùng cho một request khác"));
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.statusCode())
+                .header(REPLAYED_HEADER, "true");
+        if (stored.body() == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(stored.body());
+    }
+
+    private static ResponseEntity<?> inProgress() {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("message", "Request với Idempotency-Key này đang được xử lý, vui lòng thử lại sau"));
+    }
+
+    // Không lưu được response thì rollback luôn thao tác ghi: lần thử lại sẽ chạy như request mới mà không tạo trùng
+    private String toJson(Object body) {
+        try {
+            return body == null ? null : objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Không lưu được response cho Idempotency-Key: " + e.getMessage(), e);
+        }
+    }
+
+    private IdempotencyRecord newRecord(String scope, String key, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setScope(scope);
+        record.setKey(key);
+        record.setRequestHash(requestHash);
+        record.setCreatedAt(now);
+        record.setExpiresAt(now.plusHours(ttlHours));
+        return record;
+    }
+
+    private void remember(String cacheKey, StoredResponse stored) {
+        synchronized (cache) {
+            cache.put(cacheKey, stored);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] json = request == null ? new byte[0] : objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Không thể tính hash của request", e);
+        }
+    }
+}
@@ -24,11 +24,14 @@ import org.springframework.context.annotation.Lazy;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pocketvision.ledger.dto.DuplicateMode;
+import com.pocketvision.ledger.dto.InvoiceSummary;
 import com.pocketvision.ledger.model.Expense;
 import com.pocketvision.ledger.model.Invoice;
 import com.pocketvision.ledger.model.InvoiceItem;
 import com.pocketvision.ledger.model.Notification;
 import com.pocketvision.ledger.repository.InvoiceRepository;
+import com.pocketvision.ledger.util.Money;
 
 import lombok.Data;
 
@@ -163,7 +166,7 @@ public class InvoiceService {
                 
                 item.setUnitPrice(price);
                 item.setQuantity(quantity);
-                item.setTotalPrice(price * quantity);
+                item.setTotalPriceMinor(Money.toMinor(price) * quantity);
                 item.setInvoice(invoice);
                 items.add(item);
             }
@@ -252,6 +255,11 @@ public class InvoiceService {
         return invoiceRepository.findByUserIdOrderByCreatedAtDesc(userId);
     }
 
+    @Transactional(readOnly = true)
+    public List<InvoiceSummary> getInvoiceSummaries(Long userId) {
+        return invoiceRepository.findSummariesByUserId(userId);
+    }
+
     @Transactional
     public Invoice updateInvoice(Long id, Long userId, Invoice updatedInfo) {
         Invoice existing = invoiceRepository.findById(id)
@@ -271,8 +279,9 @@ public class InvoiceService {
         return invoiceRepository.save(existing);
     }
     
+    // Hóa đơn thường đã được nhập tay trước đó: kiểm tra trùng theo duplicateMode (xem DuplicateMode)
     @Transactional
-    public Expense convertToExpense(Long invoiceId, Long userId) {
+    public Expense convertToExpense(Long invoiceId, Long userId, DuplicateMode duplicateMode) {
         Invoice invoice = invoiceRepository.findById(invoiceId)
                 .orElseThrow(() -> new IllegalArgumentException("Hóa đơn không tồn tại"));
 
@@ -288,7 +297,7 @@ public class InvoiceService {
         expense.setUserId(userId);
         expense.setCategoryId(invoice.getCategoryId());
         expense.setStoreName(invoice.getStoreName());
-        expense.setTotalAmount(invoice.getTotalAmount());
+        expense.setTotalAmountMinor(invoice.getTotalAmountMinor());
         expense.setExpenseDate(invoice.getInvoiceDate());
         expense.setNote(invoice.getNote());
         
@@ -298,7 +307,7 @@ public class InvoiceService {
             expense.setPaymentMethod(Expense.PaymentMethod.CASH); 
         }
 
-        return expenseService.createExpense(expense);
+        return expenseService.createExpense(expense, duplicateMode);
     }
 
     // ==========================================
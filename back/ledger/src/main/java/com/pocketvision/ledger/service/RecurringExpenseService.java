@@ -0,0 +1,273 @@
+package com.pocketvision.ledger.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.pocketvision.ledger.dto.BatchItemResult;
+import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.model.RecurringExpense;
+import com.pocketvision.ledger.repository.RecurringExpenseJdbcRepository;
+import com.pocketvision.ledger.repository.RecurringExpenseRepository;
+
+/**
+ * Quản lý quy tắc chi tiêu định kỳ và job sinh expense cho các lần phát sinh đến hạn.
+ * Job xử lý theo lô quy tắc (của mọi user): mỗi lô là một transaction gồm khóa quy tắc, insert expense bằng
+ * JDBC batch (qua createExpensesBatch: rollup tính lại theo ngày, ngân sách cập nhật một lần cho mỗi
+ * (user, danh mục, tháng) sau commit) và dời next_run_date. Expense và next_run_date cùng commit hoặc cùng
+ * rollback nên chạy lại sau khi tắt giữa chừng không tạo trùng; sau thời gian ngừng, lần chạy kế tiếp bù đủ các lần bị lỡ.
+ * Lần phát sinh bị từ chối thì không bị bỏ qua: quy tắc dừng ở lần đó, bị tắt và ghi lý do vào lastError
+ * để user sửa rồi bật lại (các lần còn thiếu được tạo bù từ đó).
+ */
+@Service
+public class RecurringExpenseService {
+
+    private record BatchOutcome(int rules, int created, int failed) {}
+
+    @Autowired
+    private RecurringExpenseRepository recurringRepository;
+
+    @Autowired
+    private RecurringExpenseJdbcRepository recurringJdbcRepository;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxOccurrencesPerRule;
+
+    public RecurringExpenseService(
+            PlatformTransactionManager transactionManager,
+            @Value("${application.recurring.batch-size:500}") int batchSize,
+            @Value("${application.recurring.max-occurrences-per-run:400}") int maxOccurrencesPerRule) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxOccurrencesPerRule = Math.max(1, maxOccurrencesPerRule);
+    }
+
+    // ==========================================
+    // CRUD
+    // ==========================================
+
+    public List<RecurringExpense> getByUser(Long userId) {
+        return recurringRepository.findByUserIdOrderByNextRunDateAsc(userId);
+    }
+
+    public RecurringExpense getById(Long id) {
+        return recurringRepository.findById(id).orElse(null);
+    }
+
+    @Transactional
+    public RecurringExpense create(RecurringExpense rule) {
+        validate(rule);
+        rule.setId(null);
+        // Lần phát sinh đầu tiên là startDate (nếu startDate ở quá khứ, lần chạy kế tiếp sẽ tạo bù)
+        rule.setNextRunDate(rule.getStartDate());
+        rule.setActive(rule.getEndDate() == null || !rule.getStartDate().isAfter(rule.getEndDate()));
+        return recurringRepository.save(rule);
+    }
+
+    // Không đụng tới các expense đã sinh; nextRunDate chỉ đổi khi client gửi lên
+    @Transactional
+    public RecurringExpense update(Long id, RecurringExpense updated) {
+        RecurringExpense existing = recurringRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy chi tiêu định kỳ"));
+
+        validate(updated);
+
+        existing.setCategoryId(updated.getCategoryId());
+        existing.setStoreName(updated.getStoreName());
+        existing.setTotalAmountMinor(updated.getTotalAmountMinor());
+        existing.setPaymentMethod(updated.getPaymentMethod());
+        existing.setNote(updated.getNote());
+        existing.setIntervalUnit(updated.getIntervalUnit());
+        existing.setIntervalCount(updated.getIntervalCount());
+        existing.setStartDate(updated.getStartDate());
+        existing.setEndDate(updated.getEndDate());
+        if (updated.getNextRunDate() != null) {
+            existing.setNextRunDate(updated.getNextRunDate());
+        }
+        if (updated.getActive() != null) {
+            existing.setActive(updated.getActive());
+        }
+        existing.setLastError(null);
+
+        return recurringRepository.save(existing);
+    }
+
+    @Transactional
+    public void delete(Long id) {
+        if (!recurringRepository.existsById(id)) {
+            throw new IllegalArgumentException("Không tìm thấy chi tiêu định kỳ");
+        }
+        recurringRepository.deleteById(id);
+    }
+
+    // ==========================================
+    // JOB SINH EXPENSE
+    // ==========================================
+
+    // Chạy định kỳ và ngay sau khi khởi động (bù các lần phát sinh trong thời gian server tắt)
+    @Scheduled(initialDelayString = "${application.recurring.initial-delay-ms:30000}",
+               fixedDelayString = "${application.recurring.run-interval-ms:3600000}")
+    public void generateDueExpenses() {
+        generateDue(LocalDate.now());
+    }
+
+    /**
+     * Sinh expense cho mọi lần phát sinh có ngày <= today. Trả về số expense đã tạo.
+     */
+    public int generateDue(LocalDate today) {
+        long start = System.currentTimeMillis();
+        AtomicLong cursor = new AtomicLong(0);
+        int rules = 0;
+        int created = 0;
+        int failed = 0;
+
+        while (true) {
+            long afterId = cursor.get();
+            BatchOutcome outcome;
+            try {
+                outcome = transactionTemplate.execute(status -> generateBatch(today, cursor));
+            } catch (RuntimeException e) {
+                System.err.println("❌ Recurring expenses: lô sau id " + afterId + " thất bại, sẽ thử lại lần chạy sau: " + e.getMessage());
+                // Lỗi trước khi nhận được lô thì dừng; ngược lại bỏ qua lô này và xử lý tiếp
+                if (cursor.get() == afterId) break;
+                continue;
+            }
+            if (outcome == null || outcome.rules() == 0) break;
+
+            rules += outcome.rules();
+            created += outcome.created();
+            failed += outcome.failed();
+        }
+
+        if (rules > 0) {
+            System.out.println("🔁 Recurring expenses: " + rules + " quy tắc, tạo " + created + " khoản chi"
+                    + (failed > 0 ? " (" + failed + " lỗi)" : "") + " trong " + (System.currentTimeMillis() - start) + " ms");
+        }
+        return created;
+    }
+
+    private BatchOutcome generateBatch(LocalDate today, AtomicLong cursor) {
+        List<RecurringExpense> rules = recurringJdbcRepository.lockDue(today, cursor.get(), batchSize);
+        if (rules.isEmpty()) return new BatchOutcome(0, 0, 0);
+        cursor.set(rules.get(rules.size() - 1).getId());
+
+        List<Expense> expenses = new ArrayList<>();
+        List<RecurringExpense> owners = new ArrayList<>();
+        for (RecurringExpense rule : rules) {
+            LocalDate next = rule.getNextRunDate();
+            try {
+                expenseService.validateExpense(toExpense(rule, next));
+            } catch (IllegalArgumentException e) {
+                // Dữ liệu quy tắc không còn hợp lệ (tạo trước khi có ràng buộc hiện tại): tắt, giữ nguyên nextRunDate
+                deactivate(rule, e.getMessage());
+                continue;
+            }
+
+            int occurrences = 0;
+            // Quá maxOccurrencesPerRule thì phần còn lại được tạo ở lần chạy sau
+            while (!next.isAfter(today) && !isPastEnd(rule, next) && occurrences < maxOccurrencesPerRule) {
+                expenses.add(toExpense(rule, next));
+                owners.add(rule);
+                next = nextOccurrence(rule, next);
+                occurrences++;
+            }
+            rule.setNextRunDate(next);
+            rule.setActive(!isPastEnd(rule, next));
+        }
+
+        int failed = 0;
+        if (!expenses.isEmpty()) {
+            List<BatchItemResult> results = expenseService.createExpensesBatch(expenses);
+            // Lùi nextRunDate về lần phát sinh đầu tiên bị từ chối của mỗi quy tắc để lần đó không bị mất
+            Map<RecurringExpense, LocalDate> firstFailure = new IdentityHashMap<>();
+            for (BatchItemResult result : results) {
+                if (!result.isSuccess()) {
+                    failed++;
+                    RecurringExpense rule = owners.get(result.getIndex());
+                    if (!firstFailure.containsKey(rule)) {
+                        firstFailure.put(rule, expenses.get(result.getIndex()).getExpenseDate());
+                        deactivate(rule, result.getMessage());
+                    }
+                }
+            }
+            firstFailure.forEach(RecurringExpense::setNextRunDate);
+        }
+        recurringJdbcRepository.advanceAll(rules);
+
+        return new BatchOutcome(rules.size(), expenses.size() - failed, failed);
+    }
+
+    private static void deactivate(RecurringExpense rule, String reason) {
+        String message = reason != null ? reason : "Không tạo được khoản chi";
+        rule.setActive(false);
+        rule.setLastError(message.length() > 255 ? message.substring(0, 255) : message);
+        System.err.println("⚠️ Recurring expense " + rule.getId() + " đã bị tắt: " + message);
+    }
+
+    private static boolean isPastEnd(RecurringExpense rule, LocalDate date) {
+        return rule.getEndDate() != null && date.isAfter(rule.getEndDate());
+    }
+
+    // Với MONTH/YEAR giữ ngày trong tháng của startDate (31 -> 30/28 ở tháng ngắn rồi quay lại 31)
+    private static LocalDate nextOccurrence(RecurringExpense rule, LocalDate current) {
+        int count = rule.getIntervalCount() != null && rule.getIntervalCount() > 0 ? rule.getIntervalCount() : 1;
+        LocalDate next = switch (rule.getIntervalUnit()) {
+            case DAY -> current.plusDays(count);
+            case WEEK -> current.plusWeeks(count);
+            case MONTH -> current.plusMonths(count);
+            case YEAR -> current.plusYears(count);
+        };
+        if (rule.getIntervalUnit() == RecurringExpense.Interval.MONTH || rule.getIntervalUnit() == RecurringExpense.Interval.YEAR) {
+            int anchorDay = rule.getStartDate().getDayOfMonth();
+            next = next.withDayOfMonth(Math.min(anchorDay, next.lengthOfMonth()));
+        }
+        return next;
+    }
+
+    private static Expense toExpense(RecurringExpense rule, LocalDate date) {
+        Expense expense = new Expense();
+        expense.setUserId(rule.getUserId());
+        expense.setCategoryId(rule.getCategoryId());
+        expense.setStoreName(rule.getStoreName());
+        expense.setTotalAmountMinor(rule.getTotalAmountMinor());
+        expense.setPaymentMethod(rule.getPaymentMethod());
+        expense.setNote(rule.getNote());
+        expense.setExpenseDate(date);
+        return expense;
+    }
+
+    // Ràng buộc riêng của quy tắc, rồi ràng buộc của expense mà quy tắc sẽ sinh ra (cùng validateExpense khi ghi)
+    private void validate(RecurringExpense rule) {
+        if (rule.getIntervalUnit() == null) {
+            throw new IllegalArgumentException("Vui lòng chọn chu kỳ lặp lại");
+        }
+        if (rule.getIntervalCount() == null || rule.getIntervalCount() < 1 || rule.getIntervalCount() > 365) {
+            throw new IllegalArgumentException("Số chu kỳ lặp lại phải từ 1 đến 365");
+        }
+        if (rule.getStartDate() == null) {
+            throw new IllegalArgumentException("Ngày bắt đầu không được để trống");
+        }
+        if (rule.getEndDate() != null && rule.getEndDate().isBefore(rule.getStartDate())) {
+            throw new IllegalArgumentException("Ngày kết thúc phải sau ngày bắt đầu");
+        }
+        if (rule.getPaymentMethod() == null) {
+            rule.setPaymentMethod(Expense.PaymentMethod.OTHER);
+        }
+        expenseService.validateExpense(toExpense(rule, rule.getStartDate()));
+    }
+}
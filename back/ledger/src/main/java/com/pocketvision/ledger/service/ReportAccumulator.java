@@ -0,0 +1,193 @@
+package com.pocketvision.ledger.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.time.temporal.ChronoUnit;
+
+import com.pocketvision.ledger.dto.CategoryExpenseAggregate;
+import com.pocketvision.ledger.dto.DailyExpenseAggregate;
+import com.pocketvision.ledger.dto.ExpenseAggregate;
+import com.pocketvision.ledger.dto.PaymentMethodExpenseAggregate;
+import com.pocketvision.ledger.model.Expense;
+
+/**
+ * Gom số liệu báo cáo trong một lần duyệt duy nhất.
+ * count/sum/min/max luôn được tính; các nhóm (danh mục, phương thức, tháng, ngày) chỉ tính khi được yêu cầu.
+ * Nhận được cả expense gốc lẫn các dòng đã GROUP BY sẵn trong DB (xem DailySpendRollupRepository.aggregateBy*).
+ *
+ * Tổng theo ngày được giữ trong mảng long[] đánh chỉ số theo epoch-day so với startDate;
+ * tổng theo tuần/tháng được gộp từ mảng này nên chi phí tuyến tính theo số ngày của khoảng.
+ *
+ * Mọi số tiền là long theo đơn vị 1/100 đồng (xem Money): cộng dồn chính xác, không boxing;
+ * bên gọi tự đổi sang đồng khi đưa ra JSON.
+ */
+public class ReportAccumulator {
+
+    public enum Output {
+        CATEGORY, PAYMENT_METHOD, MONTH, DAY
+    }
+
+    private static final Expense.PaymentMethod[] PAYMENT_METHODS = Expense.PaymentMethod.values();
+
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final long startEpochDay;
+
+    private final boolean byCategory;
+    private final boolean byPaymentMethod;
+
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    // Mỗi danh mục một ô long[1] để cộng dồn tại chỗ; key null = không có danh mục
+    private final Map<Long, long[]> categoryTotals = new HashMap<>();
+    // Đánh chỉ số theo ordinal của PaymentMethod
+    private final long[] paymentMethodTotals = new long[PAYMENT_METHODS.length];
+    private final boolean[] paymentMethodSeen = new boolean[PAYMENT_METHODS.length];
+
+    // null nếu không yêu cầu DAY/MONTH
+    private final long[] dailyTotals;
+
+    private ReportAccumulator(LocalDate startDate, LocalDate endDate, Set<Output> outputs) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.startEpochDay = startDate.toEpochDay();
+        this.byCategory = outputs.contains(Output.CATEGORY);
+        this.byPaymentMethod = outputs.contains(Output.PAYMENT_METHOD);
+
+        boolean needDays = outputs.contains(Output.DAY) || outputs.contains(Output.MONTH);
+        int days = (int) Math.max(0, endDate.toEpochDay() - startEpochDay + 1);
+        this.dailyTotals = needDays ? new long[days] : null;
+    }
+
+    public static ReportAccumulator forRange(LocalDate startDate, LocalDate endDate, Output... outputs) {
+        Set<Output> set = EnumSet.noneOf(Output.class);
+        Collections.addAll(set, outputs);
+        return new ReportAccumulator(startDate, endDate, set);
+    }
+
+    public ReportAccumulator add(Expense expense) {
+        long amount = expense.getTotalAmountMinor();
+        return add(expense.getExpenseDate(), expense.getCategoryId(), expense.getPaymentMethod(),
+                amount, 1, amount, amount);
+    }
+
+    // Các dòng GROUP BY trên daily_spend_rollup: mỗi dòng chỉ mang một chiều, nên chỉ nên bật output tương ứng
+    public ReportAccumulator add(DailyExpenseAggregate row) {
+        return add(row.getSpendDate(), null, null, row);
+    }
+
+    public ReportAccumulator add(CategoryExpenseAggregate row) {
+        return add(null, row.getCategoryId(), null, row);
+    }
+
+    public ReportAccumulator add(PaymentMethodExpenseAggregate row) {
+        return add(null, null, row.getPaymentMethod(), row);
+    }
+
+    private ReportAccumulator add(LocalDate day, Long categoryId, Expense.PaymentMethod paymentMethod, ExpenseAggregate row) {
+        return add(day, categoryId, paymentMethod, row.getTotalAmountMinor(), row.getExpenseCount(),
+                row.getMinAmountMinor(), row.getMaxAmountMinor());
+    }
+
+    public ReportAccumulator add(LocalDate day, Long categoryId, Expense.PaymentMethod paymentMethod,
+                                 long total, long expenseCount, long minAmount, long maxAmount) {
+        if (expenseCount <= 0) return this;
+
+        count += expenseCount;
+        sum += total;
+        if (minAmount < min) min = minAmount;
+        if (maxAmount > max) max = maxAmount;
+
+        if (byCategory) {
+            categoryTotals.computeIfAbsent(categoryId, id -> new long[1])[0] += total;
+        }
+        if (byPaymentMethod && paymentMethod != null) {
+            paymentMethodTotals[paymentMethod.ordinal()] += total;
+            paymentMethodSeen[paymentMethod.ordinal()] = true;
+        }
+        if (dailyTotals != null && day != null) {
+            long index = day.toEpochDay() - startEpochDay;
+            if (index >= 0 && index < dailyTotals.length) {
+                dailyTotals[(int) index] += total;
+            }
+        }
+        return this;
+    }
+
+    public long getCount() { return count; }
+
+    public long getSum() { return sum; }
+
+    public long getMin() { return count > 0 ? min : 0L; }
+
+    public long getMax() { return count > 0 ? max : 0L; }
+
+    // Trung bình theo 1/100 đồng, không làm tròn (chia số thực để không mất phần lẻ)
+    public double getAverage() { return count > 0 ? (double) sum / count : 0.0; }
+
+    public LocalDate getStartDate() { return startDate; }
+
+    public LocalDate getEndDate() { return endDate; }
+
+    // Key null = expense không có danh mục
+    public Map<Long, Long> getCategoryTotals() {
+        Map<Long, Long> totals = new HashMap<>(categoryTotals.size() * 2);
+        categoryTotals.forEach((categoryId, total) -> totals.put(categoryId, total[0]));
+        return totals;
+    }
+
+    // Chỉ gồm các phương thức có xuất hiện trong dữ liệu
+    public Map<Expense.PaymentMethod, Long> getPaymentMethodTotals() {
+        Map<Expense.PaymentMethod, Long> totals = new EnumMap<>(Expense.PaymentMethod.class);
+        for (int i = 0; i < PAYMENT_METHODS.length; i++) {
+            if (paymentMethodSeen[i]) totals.put(PAYMENT_METHODS[i], paymentMethodTotals[i]);
+        }
+        return totals;
+    }
+
+    // Phần tử i ứng với ngày startDate + i
+    public long[] getDailyTotals() { return dailyTotals; }
+
+    // Phần tử i ứng với 7 ngày bắt đầu từ startDate + 7i (tuần cuối có thể ngắn hơn)
+    public long[] getWeeklyTotals() {
+        int weeks = (dailyTotals.length + 6) / 7;
+        long[] weekly = new long[weeks];
+        for (int i = 0; i < dailyTotals.length; i++) {
+            weekly[i / 7] += dailyTotals[i];
+        }
+        return weekly;
+    }
+
+    // Phần tử i ứng với tháng YearMonth.from(startDate) + i
+    public long[] getMonthlyTotals() {
+        YearMonth first = YearMonth.from(startDate);
+        int months = (int) ChronoUnit.MONTHS.between(first, YearMonth.from(endDate)) + 1;
+        long[] monthly = new long[Math.max(0, months)];
+
+        int dayIndex = 0;
+        YearMonth month = first;
+        for (int m = 0; m < monthly.length; m++) {
+            // Số ngày của tháng này nằm trong khoảng (tháng đầu bắt đầu giữa tháng, tháng cuối có thể bị cắt)
+            int monthStart = (m == 0) ? startDate.getDayOfMonth() : 1;
+            int daysInMonth = month.lengthOfMonth() - monthStart + 1;
+            int end = Math.min(dailyTotals.length, dayIndex + daysInMonth);
+            long total = 0L;
+            for (int i = dayIndex; i < end; i++) {
+                total += dailyTotals[i];
+            }
+            monthly[m] = total;
+            dayIndex = end;
+            month = month.plusMonths(1);
+        }
+        return monthly;
+    }
+}
@@ -0,0 +1,132 @@
+package com.pocketvision.ledger.service;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Cache kết quả báo cáo theo (userId, loại báo cáo, khoảng ngày).
+ * Giới hạn theo số lượng (LRU) và TTL; mọi thao tác ghi expense/category/budget của user sẽ xóa cache của user đó.
+ */
+@Component
+public class ReportCache {
+
+    private record Key(Long userId, String reportType, LocalDate startDate, LocalDate endDate) {}
+
+    private record Entry(Map<String, Object> value, long expiresAt) {}
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<Key, Entry> entries;
+
+    // Token của user, bị thay mỗi lần invalidate: kết quả chỉ được lưu nếu token không đổi trong lúc tính.
+    // Chỉ có key cho user đang có entry hoặc đang tính; bị xóa khi entry cuối của user bị loại (LRU/TTL)
+    private final Map<Long, Object> generations = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ReportCache(
+            @Value("${application.report.cache.max-size:500}") int maxSize,
+            @Value("${application.report.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > ReportCache.this.maxSize) {
+                    evictions.increment();
+                    evictEntry(eldest.getKey());
+                }
+                return false;
+            }
+        };
+    }
+
+    public Map<String, Object> get(Long userId, String reportType, LocalDate startDate, LocalDate endDate,
+                                   Supplier<Map<String, Object>> loader) {
+        Key key = new Key(userId, reportType, startDate, endDate);
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt() > now) {
+                    hits.increment();
+                    return entry.value();
+                }
+                evictEntry(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+
+        Object generation = generations.computeIfAbsent(userId, id -> new Object());
+        Map<String, Object> value = Collections.unmodifiableMap(loader.get());
+
+        synchronized (entries) {
+            if (generations.get(userId) == generation) {
+                entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis));
+            }
+        }
+        return value;
+    }
+
+    // Xóa cache của user; nếu đang trong transaction thì đợi commit xong mới xóa
+    public void invalidateUser(Long userId) {
+        if (userId == null) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictUser(userId);
+                }
+            });
+        } else {
+            evictUser(userId);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return Map.of(
+            "hits", hits.sum(),
+            "misses", misses.sum(),
+            "evictions", evictions.sum(),
+            "size", size,
+            "maxSize", maxSize,
+            "ttlSeconds", ttlMillis / 1000
+        );
+    }
+
+    private void evictUser(Long userId) {
+        synchronized (entries) {
+            generations.remove(userId);
+            entries.keySet().removeIf(key -> key.userId().equals(userId));
+        }
+    }
+
+    // Gọi khi đang giữ lock entries; bỏ token của user nếu đây là entry cuối của user (duyệt tối đa max-size entry)
+    private void evictEntry(Key key) {
+        entries.remove(key);
+        Long userId = key.userId();
+        for (Key other : entries.keySet()) {
+            if (other.userId().equals(userId)) return;
+        }
+        generations.remove(userId);
+    }
+}
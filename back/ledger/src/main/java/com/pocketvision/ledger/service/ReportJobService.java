@@ -0,0 +1,187 @@
+package com.pocketvision.ledger.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Chạy báo cáo nâng cao (khoảng ngày dài) dưới dạng job nền.
+ * Job chạy trên executor riêng có giới hạn, mỗi user chỉ có tối đa N job đang chờ/chạy,
+ * kết quả được giữ lại trong một khoảng thời gian cấu hình được rồi tự xóa.
+ */
+@Service
+public class ReportJobService {
+
+    public enum Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    private static final Set<String> REPORT_TYPES = Set.of("monthly", "category", "payment_method", "trend");
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final Long userId;
+        final String reportType;
+        final LocalDate startDate;
+        final LocalDate endDate;
+        final Instant createdAt = Instant.now();
+
+        volatile Status status = Status.PENDING;
+        volatile Instant startedAt;
+        volatile Instant finishedAt;
+        volatile Map<String, Object> result;
+        volatile String error;
+
+        Job(Long userId, String reportType, LocalDate startDate, LocalDate endDate) {
+            this.userId = userId;
+            this.reportType = reportType;
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+    }
+
+    @Autowired
+    private ReportService reportService;
+
+    private final ThreadPoolExecutor executor;
+    private final int perUserLimit;
+    private final long resultTtlMillis;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> activeByUser = new ConcurrentHashMap<>();
+
+    public ReportJobService(
+            @Value("${application.report.jobs.pool-size:2}") int poolSize,
+            @Value("${application.report.jobs.queue-capacity:50}") int queueCapacity,
+            @Value("${application.report.jobs.per-user-limit:2}") int perUserLimit,
+            @Value("${application.report.jobs.result-ttl-minutes:30}") long resultTtlMinutes) {
+        this.perUserLimit = perUserLimit;
+        this.resultTtlMillis = TimeUnit.MINUTES.toMillis(resultTtlMinutes);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Tạo job mới. Ném IllegalArgumentException nếu tham số sai,
+     * IllegalStateException nếu user đã đạt giới hạn hoặc hàng đợi đầy.
+     */
+    public Map<String, Object> submit(Long userId, String reportType, LocalDate startDate, LocalDate endDate) {
+        if (reportType == null || !REPORT_TYPES.contains(reportType.toLowerCase())) {
+            throw new IllegalArgumentException("Loại báo cáo không hợp lệ: " + reportType);
+        }
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("Ngày bắt đầu phải trước ngày kết thúc");
+        }
+
+        AtomicInteger active = activeByUser.computeIfAbsent(userId, id -> new AtomicInteger());
+        if (active.incrementAndGet() > perUserLimit) {
+            active.decrementAndGet();
+            throw new IllegalStateException("Bạn đang có quá nhiều báo cáo đang xử lý, vui lòng thử lại sau");
+        }
+
+        Job job = new Job(userId, reportType.toLowerCase(), startDate, endDate);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, active));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            active.decrementAndGet();
+            throw new IllegalStateException("Hệ thống đang bận xử lý báo cáo, vui lòng thử lại sau");
+        }
+        return toStatus(job);
+    }
+
+    // null nếu job không tồn tại, đã hết hạn hoặc không thuộc về user
+    public Map<String, Object> getStatus(String jobId, Long userId) {
+        Job job = find(jobId, userId);
+        return job != null ? toStatus(job) : null;
+    }
+
+    public Status getJobStatus(String jobId, Long userId) {
+        Job job = find(jobId, userId);
+        return job != null ? job.status : null;
+    }
+
+    public Map<String, Object> getResult(String jobId, Long userId) {
+        Job job = find(jobId, userId);
+        return job != null && job.status == Status.DONE ? job.result : null;
+    }
+
+    @Scheduled(fixedDelayString = "${application.report.jobs.cleanup-interval-ms:60000}")
+    public void removeExpiredJobs() {
+        Instant cutoff = Instant.now().minusMillis(resultTtlMillis);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Job job, AtomicInteger active) {
+        job.status = Status.RUNNING;
+        job.startedAt = Instant.now();
+        try {
+            job.result = reportService.getAdvancedReport(job.userId, job.reportType, job.startDate, job.endDate);
+            job.status = Status.DONE;
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.status = Status.FAILED;
+            System.err.println("❌ Report job " + job.id + " failed: " + e.getMessage());
+        } finally {
+            job.finishedAt = Instant.now();
+            active.decrementAndGet();
+        }
+    }
+
+    private Job find(String jobId, Long userId) {
+        Job job = jobs.get(jobId);
+        if (job == null || !job.userId.equals(userId)) {
+            return null;
+        }
+        return job;
+    }
+
+    private Map<String, Object> toStatus(Job job) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobId", job.id);
+        status.put("status", job.status.name());
+        status.put("reportType", job.reportType);
+        status.put("period", Map.of(
+            "startDate", job.startDate.toString(),
+            "endDate", job.endDate.toString()
+        ));
+        status.put("createdAt", job.createdAt.toString());
+        if (job.startedAt != null) status.put("startedAt", job.startedAt.toString());
+        if (job.finishedAt != null) {
+            status.put("finishedAt", job.finishedAt.toString());
+            status.put("expiresAt", job.finishedAt.plusMillis(resultTtlMillis).toString());
+        }
+        if (job.error != null) status.put("error", job.error);
+        return status;
+    }
+}
@@ -1,26 +1,38 @@
 package com.pocketvision.ledger.service;
 
-import com.pocketvision.ledger.model.Expense;
 import com.pocketvision.ledger.model.Category;
-import com.pocketvision.ledger.repository.ExpenseRepository;
+import com.pocketvision.ledger.model.Expense;
 import com.pocketvision.ledger.repository.CategoryRepository;
+import com.pocketvision.ledger.repository.DailySpendRollupRepository;
+import com.pocketvision.ledger.service.ReportAccumulator.Output;
+import com.pocketvision.ledger.util.Money;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.WeekFields;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class ReportService {
 
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("dd/MM");
+    private static final DateTimeFormatter MONTH_LABEL = DateTimeFormatter.ofPattern("MM/yyyy");
+    private static final DateTimeFormatter WEEK_KEY = DateTimeFormatter.ofPattern("yyyy-'W'ww");
+
     @Autowired
-    private ExpenseRepository expenseRepository;
+    private DailySpendRollupRepository rollupRepository;
 
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private ReportCache reportCache;
+
     public Map<String, Object> getReportSummary(Long userId, LocalDate startDate, LocalDate endDate) {
         try {
             System.out.println("📊 Getting report summary for userId: " + userId);
@@ -30,46 +42,36 @@ public class ReportService {
             
             System.out.println("📅 Date range: " + finalStartDate + " to " + finalEndDate);
 
-            List<Expense> allExpenses = expenseRepository.findByUserId(userId);
-            System.out.println("💰 Found " + allExpenses.size() + " total expenses");
-
-            List<Expense> periodExpenses = allExpenses.stream()
-                    .filter(expense -> expense.getExpenseDate() != null)
-                    .filter(expense -> isDateInRangeCorrected(expense.getExpenseDate(), finalStartDate, finalEndDate))
-                    .collect(Collectors.toList());
+            return reportCache.get(userId, "summary", finalStartDate, finalEndDate, () -> {
+                ReportAccumulator period = accumulate(userId, finalStartDate, finalEndDate, Output.CATEGORY);
 
-            System.out.println("📈 Filtered to " + periodExpenses.size() + " expenses in period");
+                List<Category> categories = categoryRepository.findByUserId(userId);
+                System.out.println("📂 Found " + categories.size() + " categories");
 
-            List<Category> categories = categoryRepository.findByUserId(userId);
-            System.out.println("📂 Found " + categories.size() + " categories");
+                double totalExpenses = Money.toMajor(rollupRepository.sumTotalAmountMinorByUserId(userId));
 
-            double totalExpenses = allExpenses.stream()
-                    .mapToDouble(Expense::getTotalAmount)
-                    .sum();
+                System.out.println("📈 Found " + period.getCount() + " expenses in period");
 
-            double periodExpensesTotal = periodExpenses.stream()
-                    .mapToDouble(Expense::getTotalAmount)
-                    .sum();
+                List<Map<String, Object>> categoryBreakdown = calculateCategoryBreakdown(
+                        period.getCategoryTotals(), categories, period.getSum());
 
-            List<Map<String, Object>> categoryBreakdown = calculateCategoryBreakdown(
-                    periodExpenses, categories, periodExpensesTotal);
+                Map<String, Object> stats = calculateStatistics(period);
 
-            Map<String, Object> stats = calculateStatistics(periodExpenses);
-
-            Map<String, Object> result = new HashMap<>();
-            result.put("totalExpenses", totalExpenses);
-            result.put("periodExpenses", periodExpensesTotal);
-            result.put("categoryBreakdown", categoryBreakdown);
-            result.put("statistics", stats);
-            result.put("period", Map.of(
-                    "startDate", finalStartDate.toString(),
-                    "endDate", finalEndDate.toString(),
-                    "expenseCount", periodExpenses.size(),
-                    "days", java.time.temporal.ChronoUnit.DAYS.between(finalStartDate, finalEndDate) + 1
-            ));
+                Map<String, Object> result = new HashMap<>();
+                result.put("totalExpenses", totalExpenses);
+                result.put("periodExpenses", Money.toMajor(period.getSum()));
+                result.put("categoryBreakdown", categoryBreakdown);
+                result.put("statistics", stats);
+                result.put("period", Map.of(
+                        "startDate", finalStartDate.toString(),
+                        "endDate", finalEndDate.toString(),
+                        "expenseCount", period.getCount(),
+                        "days", java.time.temporal.ChronoUnit.DAYS.between(finalStartDate, finalEndDate) + 1
+                ));
 
-            System.out.println("✅ Report summary generated successfully");
-            return result;
+                System.out.println("✅ Report summary generated successfully");
+                return result;
+            });
 
         } catch (Exception e) {
             System.err.println("❌ Error in getReportSummary: " + e.getMessage());
@@ -104,43 +106,47 @@ public class ReportService {
             }
             
             System.out.println("📅 Date range: " + finalStartDate + " to " + finalEndDate);
-            
-            List<Expense> expenses = expenseRepository.findByUserId(userId);
-            System.out.println("💰 Found " + expenses.size() + " expenses for user");
-            
-            List<Expense> periodExpenses = expenses.stream()
-                    .filter(expense -> expense.getExpenseDate() != null)
-                    .filter(expense -> isDateInRangeCorrected(expense.getExpenseDate(), finalStartDate, finalEndDate))
-                    .collect(Collectors.toList());
 
-            System.out.println("📈 Filtered to " + periodExpenses.size() + " expenses in period");
-
-            Map<String, Object> chartData = new HashMap<>();
-            
-            switch (chartType.toLowerCase()) {
-                case "monthly":
-                    chartData = generateMonthlyChartData(periodExpenses, finalStartDate, finalEndDate);
-                    break;
-                case "category":
-                    chartData = generateCategoryChartData(periodExpenses, categoryRepository.findByUserId(userId));
-                    break;
-                case "daily":
-                    chartData = generateDailyChartData(periodExpenses, finalStartDate, finalEndDate);
-                    break;
-                default:
-                    chartData.put("error", "Loại biểu đồ không hợp lệ: " + chartType);
-            }
+            return reportCache.get(userId, "charts:" + chartType, finalStartDate, finalEndDate, () -> {
+                Map<String, Object> chartData = new HashMap<>();
+                long expenseCount = 0;
             
-            chartData.put("chartType", chartType);
-            chartData.put("period", Map.of(
-                "startDate", finalStartDate.toString(),
-                "endDate", finalEndDate.toString(),
-                "totalExpenses", periodExpenses.size()
-            ));
+                switch (chartType.toLowerCase()) {
+                    case "monthly": {
+                        ReportAccumulator period = accumulate(userId, finalStartDate, finalEndDate, Output.MONTH);
+                        chartData = generateMonthlyChartData(period, finalStartDate, finalEndDate);
+                        expenseCount = period.getCount();
+                        break;
+                    }
+                    case "category": {
+                        ReportAccumulator period = accumulate(userId, finalStartDate, finalEndDate, Output.CATEGORY);
+                        chartData = generateCategoryChartData(period, categoryRepository.findByUserId(userId));
+                        expenseCount = period.getCount();
+                        break;
+                    }
+                    case "daily": {
+                        ReportAccumulator period = accumulate(userId, finalStartDate, finalEndDate, Output.DAY);
+                        chartData = generateDailyChartData(period, finalStartDate, finalEndDate);
+                        expenseCount = period.getCount();
+                        break;
+                    }
+                    default:
+                        chartData.put("error", "Loại biểu đồ không hợp lệ: " + chartType);
+                }
+
+                System.out.println("📈 Found " + expenseCount + " expenses in period");
             
-            System.out.println("✅ Successfully generated chart data");
-            return chartData;
+                chartData.put("chartType", chartType);
+                chartData.put("period", Map.of(
+                    "startDate", finalStartDate.toString(),
+                    "endDate", finalEndDate.toString(),
+                    "totalExpenses", expenseCount
+                ));
             
+                System.out.println("✅ Successfully generated chart data");
+                return chartData;
+            });
+
         } catch (Exception e) {
             System.err.println("❌ Error in getChartData: " + e.getMessage());
             e.printStackTrace();
@@ -157,40 +163,50 @@ public class ReportService {
             
             System.out.println("📅 Date range: " + finalStartDate + " to " + finalEndDate);
 
-            List<Expense> expenses = expenseRepository.findByUserId(userId);
-            
-            List<Expense> periodExpenses = expenses.stream()
-                    .filter(expense -> expense.getExpenseDate() != null)
-                    .filter(expense -> isDateInRangeCorrected(expense.getExpenseDate(), finalStartDate, finalEndDate))
-                    .collect(Collectors.toList());
-
-            System.out.println("📈 Filtered to " + periodExpenses.size() + " expenses in period");
-
-            Map<String, Object> reportData = switch (reportType.toLowerCase()) {
-                case "monthly" -> generateMonthlyReport(periodExpenses, finalStartDate, finalEndDate);
-                case "category" -> generateCategoryReport(periodExpenses, categoryRepository.findByUserId(userId));
-                case "payment_method" -> generatePaymentMethodReport(periodExpenses);
-                case "trend" -> generateTrendReport(periodExpenses, finalStartDate, finalEndDate);
-                default -> {
-                    Map<String, Object> errorMap = new HashMap<>();
-                    errorMap.put("error", "Loại báo cáo không hợp lệ: " + reportType);
-                    yield errorMap;
+            return reportCache.get(userId, "advanced:" + reportType, finalStartDate, finalEndDate, () -> {
+                Map<String, Object> reportData;
+                ReportAccumulator period;
+
+                switch (reportType.toLowerCase()) {
+                    case "monthly" -> {
+                        period = accumulate(userId, finalStartDate, finalEndDate, Output.MONTH);
+                        reportData = generateMonthlyReport(period, finalStartDate, finalEndDate);
+                    }
+                    case "category" -> {
+                        period = accumulate(userId, finalStartDate, finalEndDate, Output.CATEGORY);
+                        reportData = generateCategoryReport(period, categoryRepository.findByUserId(userId));
+                    }
+                    case "payment_method" -> {
+                        period = accumulate(userId, finalStartDate, finalEndDate, Output.PAYMENT_METHOD);
+                        reportData = generatePaymentMethodReport(period);
+                    }
+                    case "trend" -> {
+                        period = accumulate(userId, finalStartDate, finalEndDate, Output.DAY);
+                        reportData = generateTrendReport(period);
+                    }
+                    default -> {
+                        period = ReportAccumulator.forRange(finalStartDate, finalEndDate);
+                        reportData = new HashMap<>();
+                        reportData.put("error", "Loại báo cáo không hợp lệ: " + reportType);
+                    }
                 }
-            };
-
-            Map<String, Object> report = new HashMap<>();
-            report.putAll(reportData);
-            report.put("reportType", reportType);
-            report.put("period", Map.of(
-                "startDate", finalStartDate.toString(), 
-                "endDate", finalEndDate.toString()
-            ));
-            report.put("totalRecords", periodExpenses.size());
-            report.put("totalAmount", periodExpenses.stream().mapToDouble(Expense::getTotalAmount).sum());
-            
-            System.out.println("✅ Successfully generated advanced report");
-            return report;
+
+                System.out.println("📈 Found " + period.getCount() + " expenses in period");
+
+                Map<String, Object> report = new HashMap<>();
+                report.putAll(reportData);
+                report.put("reportType", reportType);
+                report.put("period", Map.of(
+                    "startDate", finalStartDate.toString(), 
+                    "endDate", finalEndDate.toString()
+                ));
+                report.put("totalRecords", period.getCount());
+                report.put("totalAmount", Money.toMajor(period.getSum()));
             
+                System.out.println("✅ Successfully generated advanced report");
+                return report;
+            });
+
         } catch (Exception e) {
             System.err.println("❌ Error in getAdvancedReport: " + e.getMessage());
             e.printStackTrace();
@@ -198,14 +214,23 @@ public class ReportService {
         }
     }
 
-    private boolean isDateInRangeCorrected(LocalDate date, LocalDate startDate, LocalDate endDate) {
-        boolean isInRange = !date.isBefore(startDate) && !date.isAfter(endDate);
-        System.out.println("🔍 Date check: " + date + " in [" + startDate + " to " + endDate + "] = " + isInRange);
-        return isInRange;
+    // Một truy vấn GROUP BY trên rollup cho chiều cần thiết; MONTH cũng dùng dòng theo ngày (tối đa một dòng/ngày)
+    // vì tổng theo tháng được gộp từ mảng ngày của accumulator. count/sum/min/max tính được từ bất kỳ chiều nào.
+    private ReportAccumulator accumulate(Long userId, LocalDate startDate, LocalDate endDate, Output output) {
+        ReportAccumulator accumulator = ReportAccumulator.forRange(startDate, endDate, output);
+        switch (output) {
+            case CATEGORY -> rollupRepository.aggregateByCategory(userId, startDate, endDate)
+                    .forEach(accumulator::add);
+            case PAYMENT_METHOD -> rollupRepository.aggregateByPaymentMethod(userId, startDate, endDate)
+                    .forEach(accumulator::add);
+            case DAY, MONTH -> rollupRepository.aggregateByDay(userId, startDate, endDate)
+                    .forEach(accumulator::add);
+        }
+        return accumulator;
     }
 
-    private Map<String, Object> calculateStatistics(List<Expense> expenses) {
-        if (expenses.isEmpty()) {
+    private Map<String, Object> calculateStatistics(ReportAccumulator period) {
+        if (period.getCount() == 0) {
             return Map.of(
                 "averageDaily", 0.0,
                 "maxExpense", 0.0,
@@ -214,48 +239,26 @@ public class ReportService {
             );
         }
 
-        double averageDaily = expenses.stream()
-                .mapToDouble(Expense::getTotalAmount)
-                .average()
-                .orElse(0.0);
-
-        double maxExpense = expenses.stream()
-                .mapToDouble(Expense::getTotalAmount)
-                .max()
-                .orElse(0.0);
-
-        double minExpense = expenses.stream()
-                .mapToDouble(Expense::getTotalAmount)
-                .min()
-                .orElse(0.0);
-
         return Map.of(
-            "averageDaily", Math.round(averageDaily * 100.0) / 100.0,
-            "maxExpense", maxExpense,
-            "minExpense", minExpense,
-            "expenseCount", expenses.size(),
-            "totalAmount", expenses.stream().mapToDouble(Expense::getTotalAmount).sum()
+            "averageDaily", Math.round(period.getAverage()) / (double) Money.MINOR_PER_UNIT,
+            "maxExpense", Money.toMajor(period.getMax()),
+            "minExpense", Money.toMajor(period.getMin()),
+            "expenseCount", period.getCount(),
+            "totalAmount", Money.toMajor(period.getSum())
         );
     }
 
-    private Map<String, Object> generateMonthlyChartData(List<Expense> expenses, LocalDate startDate, LocalDate endDate) {
-        System.out.println("📈 Generating monthly chart data for " + expenses.size() + " expenses");
+    private Map<String, Object> generateMonthlyChartData(ReportAccumulator period, LocalDate startDate, LocalDate endDate) {
+        long[] monthlyData = period.getMonthlyTotals();
+        System.out.println("📈 Generating monthly chart data for " + monthlyData.length + " months");
         
-        Map<String, Double> monthlyData = expenses.stream()
-                .collect(Collectors.groupingBy(
-                    expense -> expense.getExpenseDate().format(DateTimeFormatter.ofPattern("yyyy-MM")),
-                    Collectors.summingDouble(Expense::getTotalAmount)
-                ));
+        List<String> labels = new ArrayList<>(monthlyData.length);
+        List<Double> data = new ArrayList<>(monthlyData.length);
         
-        List<String> labels = new ArrayList<>();
-        List<Double> data = new ArrayList<>();
-        
-        LocalDate current = startDate.withDayOfMonth(1);
-        while (!current.isAfter(endDate.withDayOfMonth(1))) {
-            String monthKey = current.format(DateTimeFormatter.ofPattern("yyyy-MM"));
-            String label = current.format(DateTimeFormatter.ofPattern("MM/yyyy"));
-            labels.add(label);
-            data.add(monthlyData.getOrDefault(monthKey, 0.0));
+        YearMonth current = YearMonth.from(startDate);
+        for (long total : monthlyData) {
+            labels.add(current.format(MONTH_LABEL));
+            data.add(Money.toMajor(total));
             current = current.plusMonths(1);
         }
         
@@ -275,25 +278,24 @@ public class ReportService {
         return result;
     }
 
-    private Map<String, Object> generateCategoryChartData(List<Expense> expenses, List<Category> categories) {
-        System.out.println("🥧 Generating category chart data for " + expenses.size() + " expenses");
+    private Map<String, Object> generateCategoryChartData(ReportAccumulator period, List<Category> categories) {
+        System.out.println("🥧 Generating category chart data for " + period.getCount() + " expenses");
         
-        Map<Long, Double> categoryTotals = new HashMap<>();
+        Map<Long, Long> categoryTotals = new HashMap<>();
         Map<Long, String> categoryNames = categories.stream()
                 .collect(Collectors.toMap(Category::getId, Category::getName));
         Map<Long, String> categoryColors = categories.stream()
                 .collect(Collectors.toMap(Category::getId, 
                     cat -> cat.getColorHex() != null ? cat.getColorHex() : "#6b7280"));
 
-        double otherAmount = 0.0;
+        long otherAmount = 0L;
         
-        for (Expense expense : expenses) {
-            Long categoryId = expense.getCategoryId();
+        for (Map.Entry<Long, Long> entry : period.getCategoryTotals().entrySet()) {
+            Long categoryId = entry.getKey();
             if (categoryId != null && categoryNames.containsKey(categoryId)) {
-                categoryTotals.put(categoryId, 
-                    categoryTotals.getOrDefault(categoryId, 0.0) + expense.getTotalAmount());
+                categoryTotals.put(categoryId, entry.getValue());
             } else {
-                otherAmount += expense.getTotalAmount();
+                otherAmount += entry.getValue();
             }
         }
         
@@ -301,15 +303,15 @@ public class ReportService {
         List<Double> data = new ArrayList<>();
         List<String> backgroundColors = new ArrayList<>();
         
-        for (Map.Entry<Long, Double> entry : categoryTotals.entrySet()) {
+        for (Map.Entry<Long, Long> entry : categoryTotals.entrySet()) {
             labels.add(categoryNames.get(entry.getKey()));
-            data.add(entry.getValue());
+            data.add(Money.toMajor(entry.getValue()));
             backgroundColors.add(categoryColors.get(entry.getKey()));
         }
         
         if (otherAmount > 0) {
             labels.add("Khác");
-            data.add(otherAmount);
+            data.add(Money.toMajor(otherAmount));
             backgroundColors.add("#9ca3af");
         }
         
@@ -328,48 +330,37 @@ public class ReportService {
         return result;
     }
 
-    private Map<String, Object> generateDailyChartData(List<Expense> expenses, LocalDate startDate, LocalDate endDate) {
-        System.out.println("📅 Generating daily chart data for " + expenses.size() + " expenses");
-        
-        Map<LocalDate, Double> dailyData = expenses.stream()
-                .collect(Collectors.groupingBy(
-                    Expense::getExpenseDate,
-                    Collectors.summingDouble(Expense::getTotalAmount)
-                ));
+    private Map<String, Object> generateDailyChartData(ReportAccumulator period, LocalDate startDate, LocalDate endDate) {
+        System.out.println("📅 Generating daily chart data for " + period.getCount() + " expenses");
         
-        List<String> labels = new ArrayList<>();
-        List<Double> data = new ArrayList<>();
+        long[] dailyData = period.getDailyTotals();
         
-        LocalDate current = startDate;
-        while (!current.isAfter(endDate)) {
-            labels.add(current.format(DateTimeFormatter.ofPattern("dd/MM")));
-            data.add(dailyData.getOrDefault(current, 0.0));
-            current = current.plusDays(1);
-        }
+        List<String> labels;
+        List<Double> data;
         
-        if (labels.size() > 60) {
-            List<String> weeklyLabels = new ArrayList<>();
-            List<Double> weeklyData = new ArrayList<>();
+        if (dailyData.length <= 60) {
+            labels = new ArrayList<>(dailyData.length);
+            data = new ArrayList<>(dailyData.length);
             
-            current = startDate;
-            while (!current.isAfter(endDate)) {
-                LocalDate weekStart = current;
-                LocalDate weekEnd = current.plusDays(6).isAfter(endDate) ? endDate : current.plusDays(6);
-                
-                double weekTotal = dailyData.entrySet().stream()
-                        .filter(entry -> !entry.getKey().isBefore(weekStart) && !entry.getKey().isAfter(weekEnd))
-                        .mapToDouble(Map.Entry::getValue)
-                        .sum();
-                
-                weeklyLabels.add(weekStart.format(DateTimeFormatter.ofPattern("dd/MM")) + " - " + 
-                               weekEnd.format(DateTimeFormatter.ofPattern("dd/MM")));
-                weeklyData.add(weekTotal);
-                
-                current = current.plusDays(7);
+            LocalDate current = startDate;
+            for (long total : dailyData) {
+                labels.add(current.format(DAY_LABEL));
+                data.add(Money.toMajor(total));
+                current = current.plusDays(1);
             }
+        } else {
+            // Gộp theo khối 7 ngày kể từ startDate, nhãn chỉ tạo một lần cho mỗi tuần
+            long[] weeklyData = period.getWeeklyTotals();
+            labels = new ArrayList<>(weeklyData.length);
+            data = new ArrayList<>(weeklyData.length);
             
-            labels = weeklyLabels;
-            data = weeklyData;
+            LocalDate weekStart = startDate;
+            for (long total : weeklyData) {
+                LocalDate weekEnd = weekStart.plusDays(6).isAfter(endDate) ? endDate : weekStart.plusDays(6);
+                labels.add(weekStart.format(DAY_LABEL) + " - " + weekEnd.format(DAY_LABEL));
+                data.add(Money.toMajor(total));
+                weekStart = weekStart.plusDays(7);
+            }
         }
         
         System.out.println("📊 Daily chart - Labels: " + labels.size() + " items, Data: " + data.size() + " items");
@@ -388,17 +379,13 @@ public class ReportService {
         return result;
     }
 
-    private Map<String, Object> generateMonthlyReport(List<Expense> expenses, LocalDate startDate, LocalDate endDate) {
-        Map<String, Double> monthlyTotals = expenses.stream()
-                .collect(Collectors.groupingBy(
-                    expense -> expense.getExpenseDate().format(DateTimeFormatter.ofPattern("yyyy-MM")),
-                    Collectors.summingDouble(Expense::getTotalAmount)
-                ));
+    private Map<String, Object> generateMonthlyReport(ReportAccumulator period, LocalDate startDate, LocalDate endDate) {
+        long[] monthlyData = period.getMonthlyTotals();
+        Map<String, Double> monthlyTotals = new HashMap<>();
 
-        LocalDate current = startDate.withDayOfMonth(1);
-        while (!current.isAfter(endDate.withDayOfMonth(1))) {
-            String monthKey = current.format(DateTimeFormatter.ofPattern("yyyy-MM"));
-            monthlyTotals.putIfAbsent(monthKey, 0.0);
+        YearMonth current = YearMonth.from(startDate);
+        for (long total : monthlyData) {
+            monthlyTotals.put(current.toString(), Money.toMajor(total));
             current = current.plusMonths(1);
         }
 
@@ -408,23 +395,15 @@ public class ReportService {
         return result;
     }
 
-    private Map<String, Object> generateCategoryReport(List<Expense> expenses, List<Category> categories) {
-        Map<Long, Double> categoryTotals = new HashMap<>();
+    private Map<String, Object> generateCategoryReport(ReportAccumulator period, List<Category> categories) {
         Map<Long, String> categoryNames = categories.stream()
                 .collect(Collectors.toMap(Category::getId, Category::getName));
 
-        for (Expense expense : expenses) {
-            Long categoryId = expense.getCategoryId();
-            if (categoryId != null) {
-                categoryTotals.put(categoryId, 
-                    categoryTotals.getOrDefault(categoryId, 0.0) + expense.getTotalAmount());
-            }
-        }
-
         Map<String, Object> resultData = new HashMap<>();
-        for (Map.Entry<Long, Double> entry : categoryTotals.entrySet()) {
+        for (Map.Entry<Long, Long> entry : period.getCategoryTotals().entrySet()) {
+            if (entry.getKey() == null) continue;
             String categoryName = categoryNames.getOrDefault(entry.getKey(), "Khác");
-            resultData.put(categoryName, entry.getValue());
+            resultData.put(categoryName, Money.toMajor(entry.getValue()));
         }
 
         Map<String, Object> result = new HashMap<>();
@@ -433,16 +412,10 @@ public class ReportService {
         return result;
     }
 
-    private Map<String, Object> generatePaymentMethodReport(List<Expense> expenses) {
-        Map<Expense.PaymentMethod, Double> methodTotals = expenses.stream()
-                .collect(Collectors.groupingBy(
-                    Expense::getPaymentMethod,
-                    Collectors.summingDouble(Expense::getTotalAmount)
-                ));
-
+    private Map<String, Object> generatePaymentMethodReport(ReportAccumulator period) {
         Map<String, Double> resultData = new HashMap<>();
-        for (Map.Entry<Expense.PaymentMethod, Double> entry : methodTotals.entrySet()) {
-            resultData.put(entry.getKey().name(), entry.getValue());
+        for (Map.Entry<Expense.PaymentMethod, Long> entry : period.getPaymentMethodTotals().entrySet()) {
+            resultData.put(entry.getKey().name(), Money.toMajor(entry.getValue()));
         }
 
         Map<String, Object> result = new HashMap<>();
@@ -451,15 +424,35 @@ public class ReportService {
         return result;
     }
 
-    private Map<String, Object> generateTrendReport(List<Expense> expenses, LocalDate startDate, LocalDate endDate) {
+    private Map<String, Object> generateTrendReport(ReportAccumulator period) {
         Map<String, Object> trends = new HashMap<>();
         
-        if (expenses.size() > 1) {
-            Map<String, Double> weeklyTrends = expenses.stream()
-                    .collect(Collectors.groupingBy(
-                        expense -> expense.getExpenseDate().format(DateTimeFormatter.ofPattern("yyyy-'W'ww")),
-                        Collectors.summingDouble(Expense::getTotalAmount)
-                    ));
+        if (period.getCount() > 1) {
+            long[] dailyData = period.getDailyTotals();
+            DayOfWeek firstDayOfWeek = WeekFields.of(Locale.getDefault()).getFirstDayOfWeek();
+            Map<String, Long> weeklyMinor = new HashMap<>();
+
+            // Khóa tuần chỉ đổi khi sang tuần mới hoặc sang năm mới, nên chỉ format lại tại các mốc đó;
+            // tổng của tuần được cộng dồn vào biến long và chỉ ghi vào map khi đổi khóa
+            LocalDate day = period.getStartDate();
+            String weekKey = day.format(WEEK_KEY);
+            long weekTotal = 0L;
+            for (long total : dailyData) {
+                if (day.getDayOfWeek() == firstDayOfWeek || day.getDayOfYear() == 1) {
+                    String key = day.format(WEEK_KEY);
+                    if (!key.equals(weekKey)) {
+                        if (weekTotal != 0L) weeklyMinor.merge(weekKey, weekTotal, Long::sum);
+                        weekKey = key;
+                        weekTotal = 0L;
+                    }
+                }
+                weekTotal += total;
+                day = day.plusDays(1);
+            }
+            if (weekTotal != 0L) weeklyMinor.merge(weekKey, weekTotal, Long::sum);
+
+            Map<String, Double> weeklyTrends = new HashMap<>();
+            weeklyMinor.forEach((key, total) -> weeklyTrends.put(key, Money.toMajor(total)));
             
             trends.put("weeklyTrends", weeklyTrends);
             trends.put("analysis", "Xu hướng chi tiêu theo tuần");
@@ -469,38 +462,37 @@ public class ReportService {
     }
 
     private List<Map<String, Object>> calculateCategoryBreakdown(
-            List<Expense> expenses, 
+            Map<Long, Long> categoryTotals, 
             List<Category> categories, 
-            double totalAmount) {
+            long totalAmount) {
         
-        Map<Long, Double> categoryAmounts = new HashMap<>();
+        Map<Long, Long> categoryAmounts = new HashMap<>();
         Map<Long, Category> categoryMap = categories.stream()
                 .collect(Collectors.toMap(Category::getId, category -> category));
 
-        double otherAmount = 0.0;
+        long otherAmount = 0L;
 
-        for (Expense expense : expenses) {
-            Long categoryId = expense.getCategoryId();
+        for (Map.Entry<Long, Long> entry : categoryTotals.entrySet()) {
+            Long categoryId = entry.getKey();
             if (categoryId != null && categoryMap.containsKey(categoryId)) {
-                categoryAmounts.put(categoryId, 
-                        categoryAmounts.getOrDefault(categoryId, 0.0) + expense.getTotalAmount());
+                categoryAmounts.put(categoryId, entry.getValue());
             } else {
-                otherAmount += expense.getTotalAmount();
+                otherAmount += entry.getValue();
             }
         }
 
         List<Map<String, Object>> breakdown = new ArrayList<>();
 
-        for (Map.Entry<Long, Double> entry : categoryAmounts.entrySet()) {
+        for (Map.Entry<Long, Long> entry : categoryAmounts.entrySet()) {
             Long categoryId = entry.getKey();
-            Double amount = entry.getValue();
+            long amount = entry.getValue();
             Category category = categoryMap.get(categoryId);
             
             Map<String, Object> categoryData = new HashMap<>();
             categoryData.put("id", categoryId);
             categoryData.put("name", category.getName());
-            categoryData.put("amount", amount);
-            categoryData.put("percentage", totalAmount > 0 ? Math.round((amount / totalAmount) * 100 * 100.0) / 100.0 : 0);
+            categoryData.put("amount", Money.toMajor(amount));
+            categoryData.put("percentage", Money.percentage(amount, totalAmount));
             categoryData.put("icon", category.getIcon() != null ? category.getIcon() : "📁");
             categoryData.put("color_hex", category.getColorHex());
             
@@ -511,8 +503,8 @@ public class ReportService {
             Map<String, Object> otherData = new HashMap<>();
             otherData.put("id", -1L);
             otherData.put("name", "Khác");
-            otherData.put("amount", otherAmount);
-            otherData.put("percentage", totalAmount > 0 ? Math.round((otherAmount / totalAmount) * 100 * 100.0) / 100.0 : 0);
+            otherData.put("amount", Money.toMajor(otherAmount));
+            otherData.put("percentage", Money.percentage(otherAmount, totalAmount));
             otherData.put("icon", "❓");
             otherData.put("color_hex", "#9CA3AF");
             breakdown.add(otherData);
@@ -522,4 +514,4 @@ public class ReportService {
                 .sorted((a, b) -> Double.compare((Double) b.get("amount"), (Double) a.get("amount")))
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
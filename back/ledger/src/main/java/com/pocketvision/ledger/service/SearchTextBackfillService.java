@@ -0,0 +1,92 @@
+package com.pocketvision.ledger.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.pocketvision.ledger.util.ExpenseFingerprint;
+import com.pocketvision.ledger.util.Money;
+import com.pocketvision.ledger.util.TextNormalizer;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Điền các cột tìm kiếm không dấu (store_name_search, note_search) và dấu vân tay (fingerprint) của expenses cho dữ liệu cũ.
+ * Duyệt theo id từng lô và cập nhật bằng JDBC batch, không đi qua entity
+ * để không kích hoạt @PreUpdate (updated_at) hay các xử lý ghi khác.
+ */
+@Service
+@RequiredArgsConstructor
+public class SearchTextBackfillService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private record Row(long id, String storeName, String note) {}
+
+    private record FingerprintRow(long id, long userId, long amountMinor, LocalDate expenseDate, String storeName) {}
+
+    public int backfillExpenses() {
+        return backfill(
+            "SELECT id, store_name, note FROM expenses WHERE id > ? "
+                + "AND ((store_name IS NOT NULL AND store_name_search IS NULL) OR (note IS NOT NULL AND note_search IS NULL)) "
+                + "ORDER BY id LIMIT ?",
+            "UPDATE expenses SET store_name_search = ?, note_search = ? WHERE id = ?"
+        );
+    }
+
+    // Dấu vân tay phát hiện trùng (xem ExpenseFingerprint) cho các expense tạo trước khi có cột fingerprint
+    public int backfillFingerprints() {
+        int updated = 0;
+        long lastId = 0;
+
+        while (true) {
+            List<FingerprintRow> rows = jdbcTemplate.query(
+                    "SELECT id, user_id, total_amount, expense_date, store_name FROM expenses "
+                        + "WHERE id > ? AND fingerprint IS NULL ORDER BY id LIMIT ?",
+                    (rs, i) -> new FingerprintRow(rs.getLong("id"), rs.getLong("user_id"),
+                            Money.fromDecimal(rs.getBigDecimal("total_amount")),
+                            rs.getDate("expense_date").toLocalDate(), rs.getString("store_name")),
+                    lastId, BATCH_SIZE);
+            if (rows.isEmpty()) break;
+
+            List<Object[]> args = new ArrayList<>(rows.size());
+            for (FingerprintRow row : rows) {
+                String fingerprint = ExpenseFingerprint.of(row.userId(), row.amountMinor(), row.expenseDate(), row.storeName());
+                args.add(new Object[] { fingerprint, row.id() });
+            }
+            jdbcTemplate.batchUpdate("UPDATE expenses SET fingerprint = ? WHERE id = ?", args);
+
+            updated += rows.size();
+            lastId = rows.get(rows.size() - 1).id();
+        }
+        return updated;
+    }
+
+    private int backfill(String selectSql, String updateSql) {
+        int updated = 0;
+        long lastId = 0;
+
+        while (true) {
+            List<Row> rows = jdbcTemplate.query(selectSql,
+                    (rs, i) -> new Row(rs.getLong("id"), rs.getString("store_name"), rs.getString("note")),
+                    lastId, BATCH_SIZE);
+            if (rows.isEmpty()) break;
+
+            List<Object[]> args = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                args.add(new Object[] {
+                        TextNormalizer.normalize(row.storeName()), TextNormalizer.normalize(row.note()), row.id() });
+            }
+            jdbcTemplate.batchUpdate(updateSql, args);
+
+            updated += rows.size();
+            lastId = rows.get(rows.size() - 1).id();
+        }
+        return updated;
+    }
+}
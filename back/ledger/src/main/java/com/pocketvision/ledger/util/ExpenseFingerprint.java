@@ -0,0 +1,29 @@
+package com.pocketvision.ledger.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HexFormat;
+
+/**
+ * Dấu vân tay của một khoản chi để phát hiện trùng: SHA-256 (hex) của user, số tiền (1/100 đồng),
+ * ngày chi và tên cửa hàng đã chuẩn hóa không dấu. Hai khoản chi có cùng dấu vân tay được coi là có thể trùng
+ * (ví dụ vừa nhập tay vừa chuyển từ hóa đơn).
+ */
+public final class ExpenseFingerprint {
+
+    private ExpenseFingerprint() {
+    }
+
+    public static String of(Long userId, Long amountMinor, LocalDate expenseDate, String storeName) {
+        String store = storeName == null ? "" : TextNormalizer.normalize(storeName);
+        String raw = userId + "|" + amountMinor + "|" + expenseDate + "|" + store;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(raw.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.pocketvision.ledger.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Tiền được lưu và cộng dồn dưới dạng long theo đơn vị nhỏ nhất (minor unit) = 1/100 đồng,
+ * khớp đúng với cột DECIMAL(12,2) trong DB. VND không có đơn vị lẻ nên dữ liệu thực tế luôn là bội của 100,
+ * nhưng vẫn giữ 2 chữ số thập phân để không mất dữ liệu cũ.
+ * Chỉ đổi sang double (đồng) ở biên JSON/hiển thị.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+    public static final long MINOR_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    public static long toMinor(double amount) {
+        return Math.round(amount * MINOR_PER_UNIT);
+    }
+
+    public static Long toMinor(Double amount) {
+        return amount == null ? null : toMinor(amount.doubleValue());
+    }
+
+    public static double toMajor(long minor) {
+        return (double) minor / MINOR_PER_UNIT;
+    }
+
+    public static Double toMajor(Long minor) {
+        return minor == null ? null : toMajor(minor.longValue());
+    }
+
+    public static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    public static long fromDecimal(BigDecimal amount) {
+        return amount.movePointRight(SCALE).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    // Dạng chữ dùng cho tìm kiếm theo số tiền: bỏ số 0 thừa sau dấu chấm, không dùng ký hiệu mũ
+    // (5000000 -> "50000", 1234550 -> "12345.5"); khớp với biểu thức SQL trong ExpenseRepository.searchByKeyword
+    public static String toPlainString(long minor) {
+        return BigDecimal.valueOf(minor, SCALE).stripTrailingZeros().toPlainString();
+    }
+
+    // Tỷ lệ phần trăm a/b, làm tròn 2 chữ số (tránh chia nguyên khi cả hai là long)
+    public static double percentage(long part, long total) {
+        return total > 0 ? Math.round(part * 10000.0 / total) / 100.0 : 0.0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.pocketvision.ledger.util;
+
+import java.math.BigDecimal;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Ánh xạ số tiền long (1/100 đồng, xem {@link Money}) với cột DECIMAL(12,2) mà không qua double.
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Long, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long minor) {
+        return minor == null ? null : Money.toDecimal(minor);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(BigDecimal amount) {
+        return amount == null ? null : Money.fromDecimal(amount);
+    }
+}
@@ -0,0 +1,37 @@
+package com.pocketvision.ledger.util;
+
+import java.time.YearMonth;
+
+/**
+ * Tháng của ngân sách được lưu dưới dạng số nguyên yyyymm (ví dụ 202510): 4 byte thay vì CHAR(7),
+ * so sánh bằng/khoảng trực tiếp trên index. API vẫn dùng chuỗi "yyyy-MM".
+ */
+public final class MonthPeriod {
+
+    private MonthPeriod() {
+    }
+
+    public static int toInt(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+
+    public static YearMonth fromInt(int period) {
+        return YearMonth.of(period / 100, period % 100);
+    }
+
+    // "yyyy-MM" -> YearMonth; null nếu thiếu hoặc sai định dạng
+    public static YearMonth parse(String monthYear) {
+        if (monthYear == null || !monthYear.matches("^\\d{4}-\\d{2}$")) {
+            return null;
+        }
+        int month = Integer.parseInt(monthYear.substring(5));
+        if (month < 1 || month > 12) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(monthYear.substring(0, 4)), month);
+    }
+
+    public static String format(YearMonth month) {
+        return month == null ? null : month.toString();
+    }
+}
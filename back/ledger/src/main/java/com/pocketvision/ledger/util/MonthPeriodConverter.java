@@ -0,0 +1,23 @@
+package com.pocketvision.ledger.util;
+
+import java.time.YearMonth;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Ánh xạ YearMonth với cột INT yyyymm (xem {@link MonthPeriod}).
+ */
+@Converter
+public class MonthPeriodConverter implements AttributeConverter<YearMonth, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(YearMonth month) {
+        return month == null ? null : MonthPeriod.toInt(month);
+    }
+
+    @Override
+    public YearMonth convertToEntityAttribute(Integer period) {
+        return period == null ? null : MonthPeriod.fromInt(period);
+    }
+}
@@ -0,0 +1,28 @@
+package com.pocketvision.ledger.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hóa chuỗi tiếng Việt để tìm kiếm không dấu: bỏ dấu, đ -> d, chữ thường, gộp khoảng trắng.
+ * Ví dụ: "Cà Phê  Trung Nguyên" -> "ca phe trung nguyen".
+ */
+public final class TextNormalizer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private TextNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null) return null;
+
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+        folded = COMBINING_MARKS.matcher(folded).replaceAll("");
+        folded = folded.replace('đ', 'd').replace('Đ', 'd');
+        folded = WHITESPACE.matcher(folded).replaceAll(" ");
+        return folded.toLowerCase(Locale.ROOT).trim();
+    }
+}
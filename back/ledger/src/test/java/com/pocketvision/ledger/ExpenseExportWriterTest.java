@@ -0,0 +1,179 @@
+package com.pocketvision.ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.service.ExpenseExportWriter;
+import com.pocketvision.ledger.service.ExpenseExportWriter.Format;
+
+class ExpenseExportWriterTest {
+
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+    private static final LocalDate END = LocalDate.of(2024, 12, 31);
+    private static final int DAYS = (int) (END.toEpochDay() - START.toEpochDay() + 1);
+    private static final Map<Long, String> CATEGORIES = Map.of(1L, "Ăn uống", 2L, "Di chuyển", 3L, "Mua sắm");
+
+    // Đủ lớn để nếu writer giữ lại các dòng thì heap tăng rõ rệt (vài trăm byte/dòng)
+    private static final int LARGE_ROWS = 500_000;
+
+    @Test
+    void csvEscapesFieldsAndAppendsSummary() throws Exception {
+        Expense plain = expense(1L, START, 1L, "Circle K", 50_000.0, null);
+        Expense quoted = expense(2L, START.plusDays(1), null, "Quán \"Ngon\", Q1", 25_500.5, "dòng 1\ndòng 2");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = new ExpenseExportWriter(Format.CSV, CATEGORIES)
+                .write(Stream.of(plain, quoted), START, END, out);
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertEquals(2, rows);
+        assertTrue(csv.startsWith("\uFEFFID,Ngày,Cửa hàng,Danh mục,Phương thức,Số tiền,Ghi chú\r\n"));
+        assertTrue(csv.contains("1,2020-01-01,Circle K,Ăn uống,CASH,50000,\r\n"));
+        assertTrue(csv.contains("2,2020-01-02,\"Quán \"\"Ngon\"\", Q1\",Khác,CASH,25500.5,\"dòng 1\ndòng 2\"\r\n"));
+        assertTrue(csv.contains("Số giao dịch,2\r\n"));
+        assertTrue(csv.contains("Tổng chi,75500.5\r\n"));
+    }
+
+    @Test
+    void csvNeutralizesFormulaLikeText() throws Exception {
+        Expense formula = expense(3L, START, 1L, "=HYPERLINK(\"http://x\")", 10_000.0, "+SUM(A1:A9)");
+        Expense others = expense(4L, START, 1L, "@cmd", 20_000.0, "-2+3");
+        Expense tab = expense(5L, START, 1L, "\tTab", 30_000.0, "a=b");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExpenseExportWriter(Format.CSV, CATEGORIES).write(Stream.of(formula, others, tab), START, END, out);
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.contains("3,2020-01-01,\"'=HYPERLINK(\"\"http://x\"\")\",Ăn uống,CASH,10000,\"'+SUM(A1:A9)\"\r\n"));
+        assertTrue(csv.contains("4,2020-01-01,\"'@cmd\",Ăn uống,CASH,20000,\"'-2+3\"\r\n"));
+        assertTrue(csv.contains("5,2020-01-01,\"'\tTab\",Ăn uống,CASH,30000,a=b\r\n"));
+    }
+
+    @Test
+    void xlsxContainsWorkbookPartsAndEscapedXml() throws Exception {
+        Expense e = expense(7L, START, 2L, "A & B <shop>", 120_000.0, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExpenseExportWriter(Format.XLSX, CATEGORIES).write(Stream.of(e), START, END, out);
+
+        List<String> entries = new ArrayList<>();
+        String sheet1 = null;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.add(entry.getName());
+                if (entry.getName().equals("xl/worksheets/sheet1.xml")) {
+                    sheet1 = new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            }
+        }
+
+        assertEquals(List.of("[Content_Types].xml", "_rels/.rels", "xl/workbook.xml",
+                "xl/_rels/workbook.xml.rels", "xl/worksheets/sheet1.xml", "xl/worksheets/sheet2.xml"), entries);
+        assertTrue(sheet1.contains("A &amp; B &lt;shop&gt;"));
+        assertTrue(sheet1.contains("<c><v>120000</v></c>"));
+        assertTrue(sheet1.contains("Di chuyển"));
+    }
+
+    @Test
+    @Tag("perf")
+    void largeCsvExportStreamsWithBoundedHeap() throws Exception {
+        assertStreamsWithBoundedHeap(Format.CSV);
+    }
+
+    @Test
+    @Tag("perf")
+    void largeXlsxExportStreamsWithBoundedHeap() throws Exception {
+        assertStreamsWithBoundedHeap(Format.XLSX);
+    }
+
+    /**
+     * Sinh dữ liệu lazily (giống cursor JDBC) và đo mức dùng đỉnh của vùng heap tồn lâu trong lúc ghi.
+     * Nếu writer giữ tham chiếu tới các dòng đã ghi, chúng sẽ được promote lên vùng này và đỉnh tăng tuyến tính
+     * theo số dòng; rác ngắn hạn của từng dòng chết ở young gen nên không làm lệch kết quả.
+     */
+    private void assertStreamsWithBoundedHeap(Format format) throws Exception {
+        List<MemoryPoolMXBean> pools = tenuredPools();
+        pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long baseline = pools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+
+        Stream<Expense> rows = LongStream.rangeClosed(1, LARGE_ROWS).mapToObj(this::syntheticExpense);
+
+        CountingOutputStream out = new CountingOutputStream();
+        long startNanos = System.nanoTime();
+        long written = new ExpenseExportWriter(format, CATEGORIES).write(rows, START, END, out);
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        long peak = pools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        long growthMb = Math.max(0, peak - baseline) / (1024 * 1024);
+
+        assertEquals(LARGE_ROWS, written);
+        assertTrue(out.count > LARGE_ROWS, "Output quá nhỏ: " + out.count);
+        assertTrue(growthMb < 32, "Heap tăng " + growthMb + " MB khi xuất " + LARGE_ROWS + " dòng");
+        // Ngưỡng rộng để không flaky trên CI chậm; các lần chạy thực tế nhanh hơn nhiều
+        assertTrue(seconds < 60, "Xuất " + LARGE_ROWS + " dòng mất " + seconds + "s");
+    }
+
+    private Expense syntheticExpense(long id) {
+        LocalDate day = START.plusDays(id % DAYS);
+        Long categoryId = (id % 10 == 0) ? null : (id % 3) + 1;
+        String note = (id % 4 == 0) ? "Ghi chú số " + id + ", có dấu phẩy" : null;
+        Expense e = expense(id, day, categoryId, "Cửa hàng " + (id % 500), 10_000.0 + (id % 1_000) * 1_000, note);
+        e.setPaymentMethod(Expense.PaymentMethod.values()[(int) (id % Expense.PaymentMethod.values().length)]);
+        return e;
+    }
+
+    private static Expense expense(Long id, LocalDate day, Long categoryId, String storeName, Double amount, String note) {
+        Expense e = new Expense();
+        e.setId(id);
+        e.setUserId(1L);
+        e.setExpenseDate(day);
+        e.setCategoryId(categoryId);
+        e.setStoreName(storeName);
+        e.setTotalAmount(amount);
+        e.setNote(note);
+        e.setPaymentMethod(Expense.PaymentMethod.CASH);
+        return e;
+    }
+
+    // Vùng heap tồn lâu (old/tenured): HotSpot chỉ hỗ trợ usage threshold cho các vùng này, không cho eden/survivor
+    private static List<MemoryPoolMXBean> tenuredPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported())
+                .toList();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.pocketvision.ledger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.pocketvision.ledger.model.Expense;
+import com.pocketvision.ledger.service.ReportAccumulator;
+import com.pocketvision.ledger.service.ReportAccumulator.Output;
+import com.pocketvision.ledger.util.Money;
+
+class ReportAccumulatorTest {
+
+    private static final Output[] ALL = Output.values();
+
+    @Test
+    void rangeCrossingMonthAndYearBucketsByDayWeekAndMonth() {
+        // 9 ngày: 4 ngày tháng 12/2023 + 5 ngày tháng 1/2024; tuần thứ hai chỉ có 2 ngày
+        ReportAccumulator acc = ReportAccumulator.forRange(LocalDate.of(2023, 12, 28), LocalDate.of(2024, 1, 5), ALL)
+                .add(expense(LocalDate.of(2023, 12, 28), 1L, Expense.PaymentMethod.CASH, 1500.99))
+                .add(LocalDate.of(2023, 12, 31), 2L, Expense.PaymentMethod.CREDIT_CARD, 200_001, 1, 200_001, 200_001)
+                .add(LocalDate.of(2024, 1, 1), null, Expense.PaymentMethod.CASH, 300_000, 1, 300_000, 300_000)
+                // Dòng đã GROUP BY sẵn: 3 expense cùng ngày
+                .add(LocalDate.of(2024, 1, 1), 2L, Expense.PaymentMethod.CASH, 700, 3, 100, 400)
+                .add(LocalDate.of(2024, 1, 4), 1L, Expense.PaymentMethod.E_WALLET, 5, 1, 5, 5)
+                .add(LocalDate.of(2024, 1, 5), 1L, Expense.PaymentMethod.CASH, 1_000_000, 1, 1_000_000, 1_000_000)
+                // Dòng rỗng không được tính vào min/max
+                .add(LocalDate.of(2024, 1, 2), 3L, Expense.PaymentMethod.OTHER, 0, 0, 0, 0);
+
+        assertEquals(8, acc.getCount());
+        assertEquals(1_650_805, acc.getSum());
+        assertEquals(5, acc.getMin());
+        assertEquals(1_000_000, acc.getMax());
+
+        assertArrayEquals(new long[] {150_099, 0, 0, 200_001, 300_700, 0, 0, 5, 1_000_000}, acc.getDailyTotals());
+        assertArrayEquals(new long[] {650_800, 1_000_005}, acc.getWeeklyTotals());
+        assertArrayEquals(new long[] {350_100, 1_300_705}, acc.getMonthlyTotals());
+
+        Map<Long, Long> categories = new HashMap<>();
+        categories.put(1L, 1_150_104L);
+        categories.put(2L, 200_701L);
+        categories.put(null, 300_000L);
+        assertEquals(categories, acc.getCategoryTotals());
+        assertEquals(Map.of(
+                Expense.PaymentMethod.CASH, 1_450_799L,
+                Expense.PaymentMethod.CREDIT_CARD, 200_001L,
+                Expense.PaymentMethod.E_WALLET, 5L), acc.getPaymentMethodTotals());
+    }
+
+    @Test
+    void weeksAreAnchoredAtStartDateNotCalendarWeeks() {
+        // Bắt đầu thứ Tư: tuần đầu là 10/01..16/01, tuần cuối (17/01..19/01) chỉ có 3 ngày
+        ReportAccumulator acc = ReportAccumulator.forRange(LocalDate.of(2024, 1, 10), LocalDate.of(2024, 1, 19), Output.DAY)
+                .add(LocalDate.of(2024, 1, 16), null, null, 10, 1, 10, 10)
+                .add(LocalDate.of(2024, 1, 17), null, null, 20, 1, 20, 20)
+                .add(LocalDate.of(2024, 1, 19), null, null, 40, 1, 40, 40);
+
+        assertEquals(10, acc.getDailyTotals().length);
+        assertArrayEquals(new long[] {10, 60}, acc.getWeeklyTotals());
+    }
+
+    @Test
+    void emptyRangeReturnsZeros() {
+        ReportAccumulator acc = ReportAccumulator.forRange(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29), ALL);
+
+        assertEquals(0, acc.getCount());
+        assertEquals(0, acc.getSum());
+        assertEquals(0, acc.getMin());
+        assertEquals(0, acc.getMax());
+        assertEquals(0.0, acc.getAverage());
+        assertTrue(acc.getCategoryTotals().isEmpty());
+        assertTrue(acc.getPaymentMethodTotals().isEmpty());
+        assertArrayEquals(new long[29], acc.getDailyTotals());
+        assertArrayEquals(new long[5], acc.getWeeklyTotals());
+        assertArrayEquals(new long[1], acc.getMonthlyTotals());
+
+        // endDate trước startDate: không có ngày nào
+        ReportAccumulator inverted = ReportAccumulator.forRange(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 2, 29), ALL)
+                .add(LocalDate.of(2024, 3, 1), 1L, Expense.PaymentMethod.CASH, 100, 1, 100, 100);
+        assertEquals(0, inverted.getDailyTotals().length);
+        assertEquals(0, inverted.getWeeklyTotals().length);
+        assertEquals(0, inverted.getMonthlyTotals().length);
+    }
+
+    @Test
+    void singleDayRangeHasOneDayWeekAndMonth() {
+        LocalDate day = LocalDate.of(2024, 12, 31);
+        ReportAccumulator acc = ReportAccumulator.forRange(day, day, ALL)
+                .add(day, 1L, Expense.PaymentMethod.CASH, 1_234, 2, 34, 1_200)
+                // Ngoài khoảng: vẫn vào count/sum nhưng không được ghi vào ngày nào
+                .add(day.plusDays(1), 1L, Expense.PaymentMethod.CASH, 500, 1, 500, 500);
+
+        assertArrayEquals(new long[] {1_234}, acc.getDailyTotals());
+        assertArrayEquals(new long[] {1_234}, acc.getWeeklyTotals());
+        assertArrayEquals(new long[] {1_234}, acc.getMonthlyTotals());
+        assertEquals(3, acc.getCount());
+        assertEquals(1_734, acc.getSum());
+    }
+
+    @Test
+    void sumsInMinorUnitsAreExact() {
+        LocalDate day = LocalDate.of(2024, 5, 1);
+        ReportAccumulator acc = ReportAccumulator.forRange(day, day, Output.MONTH);
+        for (int i = 0; i < 3; i++) {
+            acc.add(expense(day, 1L, Expense.PaymentMethod.CASH, 0.1));
+        }
+        acc.add(expense(day, 1L, Expense.PaymentMethod.CASH, 0.05));
+
+        // Cộng bằng double sẽ ra 0.35000000000000003
+        assertEquals(35, acc.getSum());
+        assertEquals(0.35, Money.toMajor(acc.getSum()));
+        assertArrayEquals(new long[] {35}, acc.getMonthlyTotals());
+
+        // Trung bình giữ phần lẻ; ReportService làm tròn về 1/100 đồng khi đưa ra JSON
+        assertEquals(8.75, acc.getAverage());
+        assertEquals(0.09, Math.round(acc.getAverage()) / (double) Money.MINOR_PER_UNIT);
+    }
+
+    private static Expense expense(LocalDate day, Long categoryId, Expense.PaymentMethod paymentMethod, double amount) {
+        Expense e = new Expense();
+        e.setUserId(1L);
+        e.setExpenseDate(day);
+        e.setCategoryId(categoryId);
+        e.setPaymentMethod(paymentMethod);
+        e.setTotalAmount(amount);
+        return e;
+    }
+}
@@ -39,6 +39,8 @@ const AddExpense = () => {
   const [categories, setCategories] = useState<Category[]>([]);
   const [isLoadingCategories, setIsLoadingCategories] = useState(true);
   const [isSubmitting, setIsSubmitting] = useState(false);
+  // Giữ nguyên key khi người dùng bấm lưu lại sau lỗi mạng -> server không tạo trùng chi tiêu
+  const [idempotencyKey] = useState(() => crypto.randomUUID());
 
   const user = JSON.parse(localStorage.getItem("user") || "{}");
   const userId = user?.id;
@@ -109,6 +111,8 @@ const AddExpense = () => {
         paymentMethod: formData.paymentMethod,
         note: formData.note,
         expenseDate: formData.expenseDate,
+      }, {
+        headers: { "Idempotency-Key": idempotencyKey },
       });
 
       toast({
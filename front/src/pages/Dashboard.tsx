@@ -91,7 +91,7 @@ const Dashboard = () => {
         // GỌI API SONG SONG (Parallel) để tối ưu tốc độ
         // axiosClient tự động thêm Header "Authorization: Bearer ..."
         const [expensesRes, budgetsRes] = await Promise.all([
-          axiosClient.get(`/expenses`, { params: { userId } }),
+          axiosClient.get(`/expenses`, { params: { userId, view: "summary" } }),
           axiosClient.get(`/budgets/month`, { params: { userId, monthYear: currentMonth } })
         ]);
 
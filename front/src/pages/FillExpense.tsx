@@ -92,18 +92,12 @@ export default function FillExpense() {
           endDate: filters.endDate || null,
           minAmount: filters.minAmount || null,
           maxAmount: filters.maxAmount || null,
+          // Lọc theo tên danh mục được xử lý ở server
+          category: filters.category.trim() || null,
         },
       });
 
-      let data = res.data;
-
-      if (filters.category.trim()) {
-        const keyword = filters.category.toLowerCase();
-        data = data.filter((item: Expense) => {
-          const catName = getCategoryName(item.categoryId).toLowerCase();
-          return catName.includes(keyword);
-        });
-      }
+      const data = res.data;
 
       if (data.length === 0) {
         setMessage("❌ Không tìm thấy dữ liệu phù hợp với điều kiện lọc.");
@@ -160,7 +160,7 @@ const Reports = () => {
     }
   };
 
-  const handleExport = async (format: "pdf" | "excel") => {
+  const handleExport = async (format: "csv" | "excel") => {
     if (!userId) return;
 
     try {
@@ -170,17 +170,45 @@ const Reports = () => {
       });
 
       const response = await axiosClient.get("/reports/export", {
-        params: { userId, format }
+        params: {
+          userId,
+          format,
+          startDate: stats.period?.startDate,
+          endDate: stats.period?.endDate,
+        },
+        responseType: "blob",
       });
 
+      // Lấy tên file từ Content-Disposition nếu có
+      const disposition: string = response.headers["content-disposition"] || "";
+      const match = disposition.match(/filename="?([^";]+)"?/);
+      const fileName = match ? match[1] : `bao-cao.${format === "excel" ? "xlsx" : "csv"}`;
+
+      const url = window.URL.createObjectURL(response.data);
+      const link = document.createElement("a");
+      link.href = url;
+      link.download = fileName;
+      document.body.appendChild(link);
+      link.click();
+      link.remove();
+      window.URL.revokeObjectURL(url);
+
       toast({
-        title: "Thông báo",
-        description: response.data.message || `Đã gửi yêu cầu xuất ${format.toUpperCase()}`,
+        title: "Thành công",
+        description: `Đã xuất báo cáo ${format.toUpperCase()}`,
       });
     } catch (err: any) {
+      // Với responseType blob, body lỗi cũng là Blob chứa JSON
+      let message = "Lỗi không xác định";
+      try {
+        const text = await err.response?.data?.text?.();
+        if (text) message = JSON.parse(text).message || message;
+      } catch {
+        // giữ thông báo mặc định
+      }
       toast({
         title: "Xuất báo cáo thất bại",
-        description: err.response?.data?.message || "Lỗi không xác định",
+        description: message,
         variant: "destructive",
       });
     }
@@ -319,8 +347,8 @@ const Reports = () => {
             <Button variant="outline" size="sm" onClick={() => handleExport("excel")} className="gap-2">
               <Download className="h-4 w-4" /> Excel
             </Button>
-            <Button size="sm" onClick={() => handleExport("pdf")} className="gradient-primary text-white gap-2 shadow-sm">
-              <Download className="h-4 w-4" /> PDF
+            <Button size="sm" onClick={() => handleExport("csv")} className="gradient-primary text-white gap-2 shadow-sm">
+              <Download className="h-4 w-4" /> CSV
             </Button>
           </div>
         </div>
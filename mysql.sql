@@ -69,15 +69,22 @@ CREATE TABLE budgets (
     id              BIGINT AUTO_INCREMENT PRIMARY KEY,
     user_id         BIGINT NOT NULL,
     category_id     BIGINT NOT NULL,
-    month_year      CHAR(7) NOT NULL,     -- ví dụ: '2025-10'
+    period          INT NOT NULL,         -- tháng dạng yyyymm, ví dụ: 202510 (API vẫn dùng '2025-10')
     limit_amount    DECIMAL(12,2) NOT NULL,
     spent_amount    DECIMAL(12,2) DEFAULT 0,
+    alert_level     VARCHAR(10) NOT NULL DEFAULT 'NONE',  -- mức cảnh báo đã thông báo: NONE, WARNING (>= 80%), EXCEEDED (>= 100%)
     created_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
     updated_at      DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
     FOREIGN KEY (category_id) REFERENCES categories(id) ON DELETE CASCADE,
-    UNIQUE KEY uniq_budget (user_id, category_id, month_year)
+    UNIQUE KEY uniq_budget (user_id, category_id, period)
 );
+-- Nâng cấp DB cũ (cột month_year CHAR(7)):
+-- ALTER TABLE budgets ADD COLUMN period INT NULL AFTER category_id;
+-- UPDATE budgets SET period = CAST(REPLACE(month_year, '-', '') AS UNSIGNED);
+-- ALTER TABLE budgets MODIFY period INT NOT NULL, DROP INDEX uniq_budget,
+--     ADD UNIQUE KEY uniq_budget (user_id, category_id, period), DROP COLUMN month_year;
+-- CREATE INDEX idx_budget_user_period ON budgets(user_id, period);
 
 -- ================================================
 -- INCOME TABLE (Tùy chọn - Theo dõi thu nhập)
@@ -117,18 +124,118 @@ CREATE TABLE expenses (
     total_amount DECIMAL(12,2) NOT NULL,  -- 🔹 tổng tiền chi
     payment_method ENUM('CASH','CREDIT_CARD','BANK_TRANSFER','E_WALLET','OTHER') DEFAULT 'OTHER',  -- 🔹 phương thức thanh toán
     note VARCHAR(255),
+    store_name_search VARCHAR(150),  -- 🔹 store_name không dấu, chữ thường (tìm kiếm)
+    note_search VARCHAR(255),  -- 🔹 note không dấu, chữ thường (tìm kiếm)
+    fingerprint CHAR(64),  -- 🔹 SHA-256 (user, số tiền, ngày, cửa hàng không dấu) để phát hiện trùng
     expense_date DATE NOT NULL,  -- 🔹 ngày chi tiêu
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
     FOREIGN KEY (category_id) REFERENCES categories(id) ON DELETE SET NULL
 );
 
+-- ================================================
+-- DAILY SPEND ROLLUP (Tổng hợp chi tiêu theo ngày cho báo cáo/ngân sách)
+-- category_id = 0: expense không có danh mục
+-- ================================================
+CREATE TABLE daily_spend_rollup (
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id         BIGINT NOT NULL,
+    spend_date      DATE NOT NULL,
+    category_id     BIGINT NOT NULL DEFAULT 0,
+    payment_method  VARCHAR(20) NOT NULL DEFAULT 'OTHER',
+    total_amount    DECIMAL(14,2) NOT NULL,
+    expense_count   BIGINT NOT NULL,
+    min_amount      DECIMAL(12,2) NOT NULL,
+    max_amount      DECIMAL(12,2) NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    UNIQUE KEY uniq_rollup_cell (user_id, spend_date, category_id, payment_method)
+);
+
+-- ================================================
+-- EVENT DEAD LETTERS (Sự kiện xử lý sau commit bị lỗi sau khi hết số lần thử lại)
+-- ================================================
+CREATE TABLE event_dead_letters (
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_type      VARCHAR(100) NOT NULL,
+    payload         TEXT NOT NULL,
+    error           VARCHAR(1000),
+    attempts        INT NOT NULL,
+    created_at      DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+
+-- ================================================
+-- IDEMPOTENCY KEYS (Response đã lưu của request ghi có header Idempotency-Key)
+-- status_code NULL: request đầu tiên đang xử lý
+-- ================================================
+CREATE TABLE idempotency_keys (
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    scope           VARCHAR(100) NOT NULL,
+    idem_key        VARCHAR(100) NOT NULL,
+    request_hash    CHAR(64) NOT NULL,
+    status_code     INT,
+    response_body   TEXT,
+    created_at      DATETIME NOT NULL,
+    expires_at      DATETIME NOT NULL,
+    UNIQUE KEY uniq_idempotency_scope_key (scope, idem_key)
+);
+
+-- ================================================
+-- RECURRING EXPENSES (Chi tiêu định kỳ: tiền nhà, thuê bao, điện nước...)
+-- next_run_date: lần phát sinh kế tiếp chưa được tạo expense
+-- ================================================
+CREATE TABLE recurring_expenses (
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id         BIGINT NOT NULL,
+    category_id     BIGINT NOT NULL,
+    store_name      VARCHAR(150),
+    total_amount    DECIMAL(12,2) NOT NULL,
+    payment_method  VARCHAR(20) DEFAULT 'OTHER',
+    note            VARCHAR(255),
+    interval_unit   VARCHAR(10) NOT NULL,     -- DAY, WEEK, MONTH, YEAR
+    interval_count  INT NOT NULL DEFAULT 1,
+    start_date      DATE NOT NULL,
+    next_run_date   DATE NOT NULL,
+    end_date        DATE,
+    active          BOOLEAN NOT NULL DEFAULT TRUE,
+    last_error      VARCHAR(255),             -- lý do job tự tắt quy tắc (lần phát sinh bị từ chối)
+    created_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
+    updated_at      DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (category_id) REFERENCES categories(id) ON DELETE CASCADE
+);
+
+-- ================================================
+-- BUDGET TEMPLATES (Mẫu ngân sách hằng tháng, job tạo budgets khi sang tháng)
+-- ================================================
+CREATE TABLE budget_templates (
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id         BIGINT NOT NULL,
+    category_id     BIGINT NOT NULL,
+    limit_amount    DECIMAL(12,2) NOT NULL,
+    active          BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
+    updated_at      DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (category_id) REFERENCES categories(id) ON DELETE CASCADE,
+    UNIQUE KEY uniq_budget_template (user_id, category_id)
+);
+
 -- ================================================
 -- INDEXES (Tăng hiệu năng tìm kiếm)
 -- ================================================
 CREATE INDEX idx_invoice_user ON invoices(user_id);
 CREATE INDEX idx_invoice_category ON invoices(category_id);
 CREATE INDEX idx_item_invoice ON invoice_items(invoice_id);
-CREATE INDEX idx_budget_user ON budgets(user_id);
+CREATE INDEX idx_budget_user_period ON budgets(user_id, period);
 CREATE INDEX idx_notification_user ON notifications(user_id);
-
+CREATE INDEX idx_expense_user_date ON expenses(user_id, expense_date);
+-- Tìm kiếm chữ không dấu khi tắt chỉ mục trong bộ nhớ (ExpenseRepository.searchTextByKeyword).
+-- Tắt stopword trước khi tạo: với ngram, token chứa stopword (ví dụ 'a') sẽ không được đánh chỉ mục.
+-- SET SESSION chỉ có tác dụng trong phiên chạy script này: tạo lại/rebuild chỉ mục (DROP + CREATE, ALTER TABLE ... FORCE,
+-- OPTIMIZE TABLE với innodb_optimize_fulltext_only) từ phiên khác cũng phải đặt lại giá trị này trước
+SET SESSION innodb_ft_enable_stopword = OFF;
+CREATE FULLTEXT INDEX ft_expense_search ON expenses(store_name_search, note_search) WITH PARSER ngram;
+CREATE INDEX idx_expense_user_fingerprint ON expenses(user_id, fingerprint);
+CREATE INDEX idx_idempotency_expires ON idempotency_keys(expires_at);
+CREATE INDEX idx_recurring_due ON recurring_expenses(active, next_run_date);
+CREATE INDEX idx_recurring_user ON recurring_expenses(user_id);